@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import meldexun.asmutil2.TransformEvents;
+
+/**
+ * Emits the transform events as Java Flight Recorder events. Only packaged for
+ * Java 11 and newer.
+ */
+public class JfrTransformEvents implements TransformEvents {
+
+	private static final EventType PHASE_EVENT_TYPE = EventType.getEventType(TransformPhaseEvent.class);
+	private static final EventType RESOURCE_LOAD_EVENT_TYPE = EventType.getEventType(HierarchyResourceLoadEvent.class);
+
+	@Override
+	public PhaseEvent beginPhase() {
+		if (!PHASE_EVENT_TYPE.isEnabled()) {
+			return null;
+		}
+		TransformPhaseEvent event = new TransformPhaseEvent();
+		event.begin();
+		return event;
+	}
+
+	@Override
+	public ResourceLoadEvent beginResourceLoad() {
+		if (!RESOURCE_LOAD_EVENT_TYPE.isEnabled()) {
+			return null;
+		}
+		HierarchyResourceLoadEvent event = new HierarchyResourceLoadEvent();
+		event.begin();
+		return event;
+	}
+
+	@Name("meldexun.asmutil2.TransformPhase")
+	@Label("Class Transform Phase")
+	@Description("Reading, transforming or writing a class")
+	@Category({ "ASMUtil", "Class Transformation" })
+	@StackTrace(false)
+	static class TransformPhaseEvent extends Event implements PhaseEvent {
+
+		@Label("Phase")
+		String phase;
+
+		@Label("Class Name")
+		String className;
+
+		@Label("Transformer")
+		String transformer;
+
+		@Label("Bytes In")
+		@DataAmount
+		int bytesIn;
+
+		@Label("Bytes Out")
+		@DataAmount
+		int bytesOut;
+
+		@Override
+		public void end(String phase, String className, String transformer, int bytesIn, int bytesOut) {
+			this.end();
+			if (this.shouldCommit()) {
+				this.phase = phase;
+				this.className = className;
+				this.transformer = transformer;
+				this.bytesIn = bytesIn;
+				this.bytesOut = bytesOut;
+				this.commit();
+			}
+		}
+
+	}
+
+	@Name("meldexun.asmutil2.HierarchyResourceLoad")
+	@Label("Class Hierarchy Resource Load")
+	@Description("Reading the header of a class to resolve the class hierarchy")
+	@Category({ "ASMUtil", "Class Transformation" })
+	static class HierarchyResourceLoadEvent extends Event implements ResourceLoadEvent {
+
+		@Label("Class Name")
+		String className;
+
+		@Label("Location")
+		String location;
+
+		@Label("Bytes")
+		@DataAmount
+		int bytes;
+
+		@Override
+		public void end(String className, String location, int bytes) {
+			this.end();
+			if (this.shouldCommit()) {
+				this.className = className;
+				this.location = location;
+				this.bytes = bytes;
+				this.commit();
+			}
+		}
+
+	}
+
+}
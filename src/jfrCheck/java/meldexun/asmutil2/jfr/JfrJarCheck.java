@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.jfr;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import meldexun.asmutil2.TransformEvents;
+
+/**
+ * Run against the packaged jar by the {@code checkJfrJar} task. Fails if the
+ * multi-release jar does not provide the JFR implementation of
+ * {@link TransformEvents} or it does not record events.
+ */
+public class JfrJarCheck {
+
+	public static void main(String[] args) throws Exception {
+		if (!TransformEvents.INSTANCE.getClass().getName().equals("meldexun.asmutil2.jfr.JfrTransformEvents")) {
+			throw new IllegalStateException("Unexpected transform events: " + TransformEvents.INSTANCE.getClass());
+		}
+
+		Path file = Files.createTempFile("transform-events", ".jfr");
+		try {
+			try (Recording recording = new Recording()) {
+				recording.enable("meldexun.asmutil2.TransformPhase");
+				recording.enable("meldexun.asmutil2.HierarchyResourceLoad");
+				recording.start();
+				TransformEvents.PhaseEvent phaseEvent = TransformEvents.INSTANCE.beginPhase();
+				phaseEvent.end("transform", "a/B", "a.Transformer", 1, 2);
+				TransformEvents.ResourceLoadEvent resourceLoadEvent = TransformEvents.INSTANCE.beginResourceLoad();
+				resourceLoadEvent.end("a/B", null, 3);
+				recording.stop();
+				recording.dump(file);
+			}
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+			if (events.size() != 2) {
+				throw new IllegalStateException("Expected 2 events but recorded " + events);
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Real class files used as benchmark input. Classes are read from the
+ * benchmark class path so every run uses the same bytes.
+ */
+final class ClassCorpus {
+
+	private ClassCorpus() {
+
+	}
+
+	static byte[] read(String internalName) {
+		try (InputStream in = ClassCorpus.class.getClassLoader().getResourceAsStream(internalName + ".class")) {
+			if (in == null) {
+				throw new IllegalArgumentException("Class not found: " + internalName);
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	static ClassNode parse(byte[] basicClass) {
+		ClassNode classNode = new ClassNode();
+		new ClassReader(basicClass).accept(classNode, 0);
+		return classNode;
+	}
+
+	/**
+	 * @return the methods of the class sorted by instruction count, largest first
+	 */
+	static MethodNode[] methodsBySize(byte[] basicClass) {
+		return parse(basicClass).methods.stream()
+				.filter(method -> method.instructions.size() > 0)
+				.sorted(Comparator.comparingInt((MethodNode method) -> method.instructions.size()).reversed())
+				.toArray(MethodNode[]::new);
+	}
+
+}
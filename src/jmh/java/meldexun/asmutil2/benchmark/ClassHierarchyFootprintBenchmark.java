@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import meldexun.asmutil2.reader.ClassFileSource;
+import meldexun.asmutil2.reader.ClassUtil;
+
+/**
+ * Resolves the hierarchies of a synthetic class path of 50000 classes and 2000
+ * interfaces. The heap retained by the resolved hierarchies is printed during
+ * setup, the benchmarks measure lookups against the populated cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dmeldexun.asm.disableLogging=true")
+public class ClassHierarchyFootprintBenchmark {
+
+	private static final int CLASS_COUNT = 50000;
+	private static final int INTERFACE_COUNT = 2000;
+	private static final int PAIR_COUNT = 1024;
+
+	private ClassUtil classUtil;
+	private String[] types;
+	private String[] subTypes;
+	private int index;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(0);
+		Map<String, byte[]> classes = new HashMap<>();
+		String[] interfaces = new String[INTERFACE_COUNT];
+		for (int i = 0; i < INTERFACE_COUNT; i++) {
+			interfaces[i] = "synthetic/api/I" + i;
+			classes.put(interfaces[i], generate(Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT,
+					interfaces[i], "java/lang/Object", pick(random, interfaces, i, 2)));
+		}
+		String[] classNames = new String[CLASS_COUNT];
+		for (int i = 0; i < CLASS_COUNT; i++) {
+			classNames[i] = "synthetic/impl/p" + (i % 100) + "/C" + i;
+			String superName = i % 16 == 0 ? "java/lang/Object" : classNames[random.nextInt(i)];
+			classes.put(classNames[i], generate(Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, classNames[i], superName,
+					pick(random, interfaces, INTERFACE_COUNT, 3)));
+		}
+		ClassFileSource source = className -> {
+			byte[] basicClass = classes.get(className);
+			return basicClass != null ? new ClassFileSource.ClassFile(ByteBuffer.wrap(basicClass), null) : null;
+		};
+
+		long heapBefore = usedHeap();
+		this.classUtil = ClassUtil.getInstance(new ClassUtil.Configuration(
+				source.orElse(ClassFileSource.of(ClassHierarchyFootprintBenchmark.class.getClassLoader()))));
+		for (String className : classNames) {
+			this.classUtil.getAllSuperTypes(className);
+		}
+		long retained = usedHeap() - heapBefore;
+		System.out.printf("%nclasses=%d retained=%d KiB (%d bytes per class)%n", classes.size(), retained >> 10,
+				retained / classes.size());
+
+		this.types = new String[PAIR_COUNT];
+		this.subTypes = new String[PAIR_COUNT];
+		for (int i = 0; i < PAIR_COUNT; i++) {
+			this.types[i] = random.nextBoolean() ? interfaces[random.nextInt(INTERFACE_COUNT)]
+					: classNames[random.nextInt(CLASS_COUNT)];
+			this.subTypes[i] = classNames[random.nextInt(CLASS_COUNT)];
+		}
+	}
+
+	private static String[] pick(Random random, String[] names, int bound, int maxCount) {
+		if (bound == 0) {
+			return new String[0];
+		}
+		return random.ints(random.nextInt(maxCount + 1), 0, bound).distinct().mapToObj(i -> names[i])
+				.toArray(String[]::new);
+	}
+
+	private static byte[] generate(int access, String name, String superName, String[] interfaces) {
+		ClassWriter classWriter = new ClassWriter(0);
+		classWriter.visit(Opcodes.V1_8, access, name, null, superName, interfaces);
+		classWriter.visitEnd();
+		return classWriter.toByteArray();
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	@Benchmark
+	public boolean isAssignableFrom() {
+		int i = this.index++ & (PAIR_COUNT - 1);
+		return this.classUtil.isAssignableFrom(this.types[i], this.subTypes[i]);
+	}
+
+	@Benchmark
+	public String getCommonSuperClass() {
+		int i = this.index++ & (PAIR_COUNT - 1);
+		return this.classUtil.getCommonSuperClass(this.types[i], this.subTypes[i]);
+	}
+
+}
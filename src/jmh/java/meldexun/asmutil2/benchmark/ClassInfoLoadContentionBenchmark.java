@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import meldexun.asmutil2.reader.ClassFileSource;
+import meldexun.asmutil2.reader.ClassInfoCache;
+import meldexun.asmutil2.reader.ClassUtil;
+
+/**
+ * Resolves class hierarchies from multiple threads while most classes still
+ * have to be loaded. Class files are generated on demand and each read is
+ * delayed by {@code readNanos} to simulate I/O. Classes share their super
+ * classes, so threads frequently request a class which is currently loaded by
+ * another thread. The cache is cleared before every iteration, the hit rate is
+ * printed afterwards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dmeldexun.asm.disableLogging=true")
+@Threads(8)
+public class ClassInfoLoadContentionBenchmark {
+
+	private static final String PREFIX = "synthetic/C";
+	private static final int CLASS_COUNT = 1 << 16;
+
+	@Param({ "0", "20000" })
+	public long readNanos;
+
+	private ClassUtil classUtil;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		long readNanos = this.readNanos;
+		ClassFileSource source = className -> {
+			if (!className.startsWith(PREFIX)) {
+				return null;
+			}
+			if (readNanos > 0) {
+				LockSupport.parkNanos(readNanos);
+			}
+			return new ClassFileSource.ClassFile(ByteBuffer.wrap(generate(className)), null);
+		};
+		this.classUtil = ClassUtil.getInstance(new ClassUtil.Configuration(
+				source.orElse(ClassFileSource.of(ClassInfoLoadContentionBenchmark.class.getClassLoader()))));
+	}
+
+	/**
+	 * {@code C<n>} extends {@code C<n / 2>}, {@code C1} extends {@link Object}.
+	 */
+	private static byte[] generate(String className) {
+		int id = Integer.parseInt(className.substring(PREFIX.length()));
+		ClassWriter classWriter = new ClassWriter(0);
+		classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null,
+				id > 1 ? PREFIX + (id >>> 1) : "java/lang/Object", null);
+		classWriter.visitEnd();
+		return classWriter.toByteArray();
+	}
+
+	@Setup(Level.Iteration)
+	public void clearCache() {
+		this.classUtil.clear();
+	}
+
+	@TearDown(Level.Iteration)
+	public void printHitRate() {
+		ClassInfoCache cache = this.classUtil.getClassInfoCache();
+		System.out.printf("%nsize=%d hitRate=%.3f%n", cache.size(), cache.hitRate());
+	}
+
+	@Benchmark
+	public String resolve() {
+		String className = PREFIX + (1 + ThreadLocalRandom.current().nextInt(CLASS_COUNT - 1));
+		return this.classUtil.findInClassHierarchy(className, "java/lang/Object"::equals);
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import meldexun.asmutil2.HashMapMethodNodeClassTransformer;
+import meldexun.asmutil2.IClassTransformer;
+import meldexun.asmutil2.IClassTransformerRegistry;
+
+/**
+ * Compares patching a single method of a large class with a class writer
+ * created from the class reader, which copies untouched methods byte by byte,
+ * against a class writer which rewrites every method.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dmeldexun.asm.disableLogging=true")
+public class ClassReaderCopyBenchmark {
+
+	@Param({ "org/objectweb/asm/ClassReader", "org/objectweb/asm/MethodWriter" })
+	public String className;
+
+	@Param({ "0", "2" })
+	public int writeFlags;
+
+	private String name;
+	private byte[] basicClass;
+	private IClassTransformer copying;
+	private IClassTransformer rewriting;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.name = this.className.replace('/', '.');
+		this.basicClass = ClassCorpus.read(this.className);
+		MethodNode[] methods = ClassCorpus.methodsBySize(this.basicClass);
+		// patch the smallest method so that copying the remaining methods dominates
+		MethodNode target = methods[methods.length - 1];
+
+		this.copying = transformer(this.name, target, this.writeFlags, true);
+		this.rewriting = transformer(this.name, target, this.writeFlags, false);
+
+		System.out.printf("%n%s: input=%d bytes copying=%d bytes rewriting=%d bytes%n", this.className,
+				this.basicClass.length, this.copying().length, this.rewriting().length);
+	}
+
+	@Benchmark
+	public byte[] copying() {
+		return this.copying.transform(this.name, this.name, this.basicClass);
+	}
+
+	@Benchmark
+	public byte[] rewriting() {
+		return this.rewriting.transform(this.name, this.name, this.basicClass);
+	}
+
+	private static IClassTransformer transformer(String name, MethodNode target, int writeFlags,
+			boolean copyClassReader) {
+		return new HashMapMethodNodeClassTransformer() {
+			@Override
+			protected void registerTransformers(IClassTransformerRegistry registry) {
+				registry.add(name, target.name, target.desc, writeFlags, method -> {
+					method.instructions.insert(new InsnNode(Opcodes.NOP));
+				});
+			}
+
+			@Override
+			protected ClassWriter createClassWriter(ClassReader classReader, int flags) {
+				if (copyClassReader) {
+					return super.createClassWriter(classReader, flags);
+				}
+				return this.createClassWriter(flags);
+			}
+		};
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import meldexun.asmutil2.SignatureMatcher;
+import meldexun.asmutil2.SignatureMatcher.Signature;
+
+/**
+ * Compares the specialized {@link SignatureMatcher}s returned by the typed
+ * factory methods against the generic ones which wrap every node in a
+ * {@link Signature}. Run with {@code -prof gc}, the specialized matchers should
+ * report no allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dmeldexun.asm.disableLogging=true")
+public class SignatureMatcherBenchmark {
+
+	private MethodNode[] methods;
+	private MethodInsnNode[] methodInsns;
+	private SignatureMatcher<MethodNode> genericMethod;
+	private SignatureMatcher<MethodNode> specializedMethod;
+	private SignatureMatcher<MethodInsnNode> genericMethodInsn;
+	private SignatureMatcher<MethodInsnNode> specializedMethodInsn;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		List<MethodNode> methods = new ArrayList<>();
+		List<MethodInsnNode> methodInsns = new ArrayList<>();
+		for (String className : new String[] { "org/objectweb/asm/ClassReader", "org/objectweb/asm/MethodWriter" }) {
+			ClassNode classNode = ClassCorpus.parse(ClassCorpus.read(className));
+			for (MethodNode method : classNode.methods) {
+				methods.add(method);
+				for (AbstractInsnNode insn : method.instructions.toArray()) {
+					if (insn instanceof MethodInsnNode) {
+						methodInsns.add((MethodInsnNode) insn);
+					}
+				}
+			}
+		}
+		this.methods = methods.toArray(new MethodNode[0]);
+		this.methodInsns = methodInsns.toArray(new MethodInsnNode[0]);
+
+		this.genericMethod = SignatureMatcher.matchingNameDescObf(Signature::of, "readCode", "a", "(Lorg/objectweb/asm/MethodVisitor;Lorg/objectweb/asm/Context;I)V");
+		this.specializedMethod = SignatureMatcher.matchingMethodNameDescObf("readCode", "a",
+				"(Lorg/objectweb/asm/MethodVisitor;Lorg/objectweb/asm/Context;I)V");
+		this.genericMethodInsn = SignatureMatcher.matchingOwnerNameDescObf(Signature::of, "org/objectweb/asm/ByteVector",
+				"putShort", "b", "(I)Lorg/objectweb/asm/ByteVector;");
+		this.specializedMethodInsn = SignatureMatcher.matchingMethodInsnOwnerNameDescObf("org/objectweb/asm/ByteVector",
+				"putShort", "b", "(I)Lorg/objectweb/asm/ByteVector;");
+
+		System.out.printf("%nmethods=%d methodInsns=%d%n", this.methods.length, this.methodInsns.length);
+	}
+
+	@Benchmark
+	public int genericMethod() {
+		return count(this.genericMethod, this.methods);
+	}
+
+	@Benchmark
+	public int specializedMethod() {
+		return count(this.specializedMethod, this.methods);
+	}
+
+	@Benchmark
+	public int genericMethodInsn() {
+		return count(this.genericMethodInsn, this.methodInsns);
+	}
+
+	@Benchmark
+	public int specializedMethodInsn() {
+		return count(this.specializedMethodInsn, this.methodInsns);
+	}
+
+	private static <T> int count(SignatureMatcher<T> matcher, T[] nodes) {
+		int matches = 0;
+		for (T node : nodes) {
+			if (matcher.test(node)) {
+				matches++;
+			}
+		}
+		return matches;
+	}
+
+}
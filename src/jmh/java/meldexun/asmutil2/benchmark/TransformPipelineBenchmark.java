@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import meldexun.asmutil2.HashMapClassNodeClassTransformer;
+import meldexun.asmutil2.IClassTransformer;
+import meldexun.asmutil2.IClassTransformerRegistry;
+
+/**
+ * End-to-end benchmark of {@link IClassTransformer#transform(String, String, byte[])}.
+ * Covers an untargeted class, a single method patch and a rewrite by multiple
+ * transformers requiring {@link ClassWriter#COMPUTE_FRAMES}. Run with
+ * {@code -prof gc} to report allocation rates, input and output sizes are
+ * printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dmeldexun.asm.disableLogging=true")
+public class TransformPipelineBenchmark {
+
+	@Param({ "org/objectweb/asm/ClassReader", "org/objectweb/asm/MethodWriter", "org/objectweb/asm/tree/MethodNode" })
+	public String className;
+
+	private String name;
+	private byte[] basicClass;
+	private IClassTransformer untargeted;
+	private IClassTransformer singleMethod;
+	private IClassTransformer multiTransformer;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.name = this.className.replace('/', '.');
+		this.basicClass = ClassCorpus.read(this.className);
+		MethodNode[] methods = ClassCorpus.methodsBySize(this.basicClass);
+
+		this.untargeted = transformer(registry -> {
+			registry.add("benchmark.Untargeted", 0, classNode -> { });
+		});
+		this.singleMethod = transformer(registry -> {
+			registry.add(this.name, methods[0].name, methods[0].desc, 0, method -> {
+				method.instructions.insert(new InsnNode(Opcodes.NOP));
+			});
+		});
+		this.multiTransformer = transformer(registry -> {
+			for (int i = 0; i < Math.min(3, methods.length); i++) {
+				registry.add(this.name, methods[i].name, methods[i].desc, ClassWriter.COMPUTE_FRAMES, method -> {
+					method.instructions.insert(new InsnNode(Opcodes.NOP));
+				});
+			}
+			registry.add(this.name, ClassWriter.COMPUTE_FRAMES, classNode -> {
+				classNode.access |= Opcodes.ACC_SYNTHETIC;
+			});
+		});
+
+		System.out.printf("%n%s: input=%d bytes singleMethod=%d bytes multiTransformer=%d bytes%n", this.className,
+				this.basicClass.length, this.singleMethod().length, this.multiTransformer().length);
+	}
+
+	@Benchmark
+	public byte[] untargeted() {
+		return this.untargeted.transform(this.name, this.name, this.basicClass);
+	}
+
+	@Benchmark
+	public byte[] singleMethod() {
+		return this.singleMethod.transform(this.name, this.name, this.basicClass);
+	}
+
+	@Benchmark
+	public byte[] multiTransformer() {
+		return this.multiTransformer.transform(this.name, this.name, this.basicClass);
+	}
+
+	static IClassTransformer transformer(Consumer<IClassTransformerRegistry> registrar) {
+		return new HashMapClassNodeClassTransformer() {
+			@Override
+			protected void registerTransformers(IClassTransformerRegistry registry) {
+				registrar.accept(registry);
+			}
+		};
+	}
+
+}
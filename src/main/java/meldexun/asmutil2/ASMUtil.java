@@ -6,187 +6,84 @@
 package meldexun.asmutil2;
 
 import java.io.IOException;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.io.UncheckedIOException;
 import java.util.ListIterator;
-import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.ClassNode;
-import org.objectweb.asm.tree.FieldInsnNode;
-import org.objectweb.asm.tree.FrameNode;
 import org.objectweb.asm.tree.InsnList;
-import org.objectweb.asm.tree.IntInsnNode;
-import org.objectweb.asm.tree.JumpInsnNode;
 import org.objectweb.asm.tree.LabelNode;
-import org.objectweb.asm.tree.LdcInsnNode;
-import org.objectweb.asm.tree.LineNumberNode;
 import org.objectweb.asm.tree.LocalVariableNode;
-import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
-import org.objectweb.asm.tree.TypeInsnNode;
-import org.objectweb.asm.tree.VarInsnNode;
 
 public class ASMUtil {
 
 	public static final Logger LOGGER = LogManager.getLogger("ASMUtil");
 	public static final boolean DISABLE_LOGGING = Boolean.parseBoolean(System.getProperty("meldexun.asm.disableLogging"));
 	public static final boolean EXPORT = Boolean.parseBoolean(System.getProperty("meldexun.asm.export"));
-	private static final Path EXPORT_DIR = Paths.get(".meldexun/asm/export");
-	private static boolean exportDirCleaned;
-
-	private static final Map<Class<? extends AbstractInsnNode>, Function<? extends AbstractInsnNode, String>> INSN_TO_STRING_SERIALIZERS = new HashMap<>();
-	static {
-		register(IntInsnNode.class, insn -> insn.operand);
-		register(VarInsnNode.class, insn -> insn.var);
-		register(TypeInsnNode.class, insn -> insn.desc);
-		register(FieldInsnNode.class, insn -> (insn.owner + " " + insn.name + " " + insn.desc));
-		register(MethodInsnNode.class, insn -> (insn.owner + " " + insn.name + " " + insn.desc));
-		register(JumpInsnNode.class, insn -> insn.label.getLabel());
-		register(LabelNode.class, insn -> insn.getLabel());
-		register(LdcInsnNode.class, insn -> insn.cst);
-		register(FrameNode.class, insn -> (insn.local + " " + insn.stack));
-		register(LineNumberNode.class, insn -> insn.line);
-	}
-
-	private static <T extends AbstractInsnNode> void register(Class<T> type, Function<T, ?> insnToStringSerializer) {
-		INSN_TO_STRING_SERIALIZERS.compute(type, (k, v) -> {
-			if (v != null) {
-				throw new IllegalArgumentException();
-			}
-			return insnToStringSerializer.andThen(Object::toString);
-		});
-	}
-
-	@SuppressWarnings("unchecked")
-	private static <T extends AbstractInsnNode> Function<T, String> get(T insn) {
-		return (Function<T, String>) INSN_TO_STRING_SERIALIZERS.get(insn.getClass());
-	}
+	public static final boolean CACHE = Boolean.parseBoolean(System.getProperty("meldexun.asm.cache"));
+	public static final boolean METRICS = Boolean.parseBoolean(System.getProperty("meldexun.asm.metrics"));
 
 	static void exportIfEnabled(String name, byte[] data) {
 		if (EXPORT) {
-			try {
-				export(name, data);
-			} catch (IOException e) {
-				String errorMessage = String.format("Failed exporting class: %s", name);
-				ASMUtil.LOGGER.error(errorMessage, e);
-				throw new ClassTransformException(errorMessage, e);
-			}
+			ClassExporter.getDefault().export(name, data);
 		}
 	}
 
-	private static void export(String name, byte[] data) throws IOException {
-		if (!exportDirCleaned) {
-			synchronized (ASMUtil.class) {
-				if (!exportDirCleaned) {
-					FileUtil.deleteDirectory(EXPORT_DIR);
-					exportDirCleaned = true;
-				}
-			}
-		}
-		FileUtil.writeFile(EXPORT_DIR.resolve(name.replace('.', '/') + ".class"), data);
-	}
-
+	/**
+	 * @see BytecodePrinter#printClass(ClassNode, Appendable)
+	 */
 	public static String classToString(ClassNode classNode) {
 		StringBuilder sb = new StringBuilder();
-		sb.append(classNode.name);
-		sb.append('\n');
-
-		sb.append(classNode.methods.stream()
-				.map(ASMUtil::methodToString)
-				.collect(Collectors.joining("\n\n")));
-
+		try {
+			BytecodePrinter.printClass(classNode, sb);
+		} catch (IOException e) {
+			// StringBuilder does not throw
+			throw new UncheckedIOException(e);
+		}
 		return sb.toString();
 	}
 
+	/**
+	 * @see BytecodePrinter#printMethod(MethodNode, Appendable)
+	 */
 	public static String methodToString(MethodNode methodNode) {
 		StringBuilder sb = new StringBuilder();
-		sb.append(methodNode.name);
-		sb.append(' ');
-		sb.append(methodNode.desc);
-		sb.append('\n');
-
-		int i = 0;
-		for (Iterator<AbstractInsnNode> iterator = methodNode.instructions.iterator(); iterator.hasNext();) {
-			AbstractInsnNode insn = iterator.next();
-			StringBuilderUtil.append(sb, i, 3);
-			sb.append(' ');
-			sb.append(instructionToString(insn));
-			if (iterator.hasNext()) {
-				sb.append('\n');
-			}
-			i++;
+		try {
+			BytecodePrinter.printMethod(methodNode, sb);
+		} catch (IOException e) {
+			// StringBuilder does not throw
+			throw new UncheckedIOException(e);
 		}
-
 		return sb.toString();
 	}
 
+	/**
+	 * @see BytecodePrinter#printInstruction(AbstractInsnNode, Appendable)
+	 */
 	public static <T extends AbstractInsnNode> String instructionToString(T insn) {
 		StringBuilder sb = new StringBuilder();
-		StringBuilderUtil.append(sb, opcodeName(insn), 15);
-		sb.append(' ');
-		StringBuilderUtil.append(sb, insn.getClass().getSimpleName(), 22);
-		sb.append(' ');
-
-		Function<T, String> insnToStringSerializer = get(insn);
-		if (insnToStringSerializer != null) {
-			sb.append(insnToStringSerializer.apply(insn));
+		try {
+			BytecodePrinter.printInstruction(insn, sb);
+		} catch (IOException e) {
+			// StringBuilder does not throw
+			throw new UncheckedIOException(e);
 		}
-
 		return sb.toString();
 	}
 
-	private static String opcodeName(AbstractInsnNode insn) {
-		if (insn instanceof LabelNode) {
-			return "";
-		}
-		if (insn instanceof LineNumberNode) {
-			return "";
-		}
-		if (insn instanceof FrameNode) {
-			return "";
-		}
-		return opcodeName(insn.getOpcode());
-	}
-
 	static String opcodeName(int opcode) {
-		return Arrays.stream(Opcodes.class.getFields())
-				.filter(field -> Modifier.isStatic(field.getModifiers()))
-				.filter(field -> field.getType() == int.class)
-				.filter(field -> !field.getName().startsWith("ASM"))
-				.filter(field -> !field.getName().startsWith("V"))
-				.filter(field -> !field.getName().startsWith("ACC_"))
-				.filter(field -> !field.getName().startsWith("T_"))
-				.filter(field -> !field.getName().startsWith("H_"))
-				.filter(field -> !field.getName().startsWith("F_"))
-				.filter(field -> {
-					try {
-						return field.getInt(null) == opcode;
-					} catch (IllegalArgumentException | IllegalAccessException e) {
-						// ignore
-						return false;
-					}
-				})
-				.map(Field::getName)
-				.findFirst()
-				.orElse(Integer.toString(opcode));
+		return BytecodePrinter.opcodeName(opcode);
 	}
 
 	public static MethodNode find(ClassNode classNode, String name) {
@@ -9,6 +9,25 @@ public abstract class AbstractClassTransformer implements IClassTransformer {
 
 	@Override
 	public byte[] transform(String obfName, String name, byte[] basicClass) {
+		TransformCache transformCache = this.getTransformCache();
+		String cacheKey = null;
+		if (transformCache != null && basicClass != null) {
+			String fingerprint = this.fingerprint(name);
+			if (fingerprint != null) {
+				cacheKey = transformCache.key(name, basicClass, fingerprint);
+				byte[] cachedClass = transformCache.get(cacheKey);
+				if (TransformMetrics.ENABLED && cachedClass != null) {
+					TransformMetrics.forClass(name).cacheHits.increment();
+				}
+				if (cachedClass == TransformCache.UNCHANGED) {
+					return basicClass;
+				}
+				if (cachedClass != null) {
+					ASMUtil.exportIfEnabled(name, cachedClass);
+					return cachedClass;
+				}
+			}
+		}
 		byte[] transformedClass;
 		try {
 			transformedClass = this.transformOrNull(obfName, name, basicClass);
@@ -17,6 +36,9 @@ public abstract class AbstractClassTransformer implements IClassTransformer {
 			ASMUtil.LOGGER.error(errorMessage, e);
 			throw new ClassTransformException(errorMessage, e);
 		}
+		if (cacheKey != null) {
+			transformCache.put(cacheKey, transformedClass);
+		}
 		if (transformedClass == null) {
 			return basicClass;
 		}
@@ -30,4 +52,21 @@ public abstract class AbstractClassTransformer implements IClassTransformer {
 	 */
 	protected abstract byte[] transformOrNull(String obfName, String name, byte[] basicClass);
 
+	/**
+	 * @return the cache used to skip transformations of previously transformed
+	 *         classes or {@code null} to disable caching
+	 */
+	protected TransformCache getTransformCache() {
+		return TransformCache.getDefault();
+	}
+
+	/**
+	 * @return a string which changes whenever the transformation of the class
+	 *         changes or {@code null} if the result of the transformation must not
+	 *         be cached
+	 */
+	protected String fingerprint(String name) {
+		return null;
+	}
+
 }
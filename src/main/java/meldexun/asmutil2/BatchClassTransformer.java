@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Transforms many classes in parallel on a {@link ForkJoinPool} with a bounded
+ * number of workers. The pool is reused by all batches, its idle workers
+ * terminate on their own. All workers use the same {@link IClassTransformer} and
+ * thus share its class hierarchy cache. A failing class does not abort the
+ * batch, its failure is reported in the {@link Result} instead. Only
+ * {@link VirtualMachineError}s other than {@link StackOverflowError} abort the
+ * batch.
+ */
+public class BatchClassTransformer {
+
+	private final IClassTransformer transformer;
+	private final ForkJoinPool pool;
+
+	public BatchClassTransformer(IClassTransformer transformer) {
+		this(transformer, Runtime.getRuntime().availableProcessors());
+	}
+
+	public BatchClassTransformer(IClassTransformer transformer, int parallelism) {
+		this(transformer, createPool(parallelism));
+	}
+
+	/**
+	 * @param pool the pool running the transformations, it is not shut down by
+	 *             this transformer
+	 */
+	public BatchClassTransformer(IClassTransformer transformer, ForkJoinPool pool) {
+		this.transformer = Objects.requireNonNull(transformer);
+		this.pool = Objects.requireNonNull(pool);
+	}
+
+	private static ForkJoinPool createPool(int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("parallelism must be positive");
+		}
+		return new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * @param classes class names mapped to their untransformed bytes, the class
+	 *                name is used as both obfuscated and deobfuscated name
+	 */
+	public Result transform(Map<String, byte[]> classes) {
+		return this.transform(new ArrayList<>(classes.entrySet()));
+	}
+
+	/**
+	 * @param classes class names and their untransformed bytes, the class name is
+	 *                used as both obfuscated and deobfuscated name
+	 */
+	public Result transform(Stream<Map.Entry<String, byte[]>> classes) {
+		return this.transform(classes
+				.map(entry -> new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()))
+				.collect(Collectors.toList()));
+	}
+
+	private Result transform(List<? extends Map.Entry<String, byte[]>> classes) {
+		Result result = new Result();
+		this.pool.invoke(new TransformTask(classes, 0, classes.size(), result));
+		return result;
+	}
+
+	private class TransformTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 6093519306470567137L;
+		private final List<? extends Map.Entry<String, byte[]>> classes;
+		private final int start;
+		private final int end;
+		private final Result result;
+
+		TransformTask(List<? extends Map.Entry<String, byte[]>> classes, int start, int end, Result result) {
+			this.classes = classes;
+			this.start = start;
+			this.end = end;
+			this.result = result;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.end - this.start > 1) {
+				int mid = (this.start + this.end) >>> 1;
+				invokeAll(new TransformTask(this.classes, this.start, mid, this.result),
+						new TransformTask(this.classes, mid, this.end, this.result));
+				return;
+			}
+			if (this.end - this.start == 1) {
+				Map.Entry<String, byte[]> entry = this.classes.get(this.start);
+				String name = entry.getKey();
+				try {
+					byte[] basicClass = entry.getValue();
+					byte[] transformedClass = BatchClassTransformer.this.transformer.transform(name, name, basicClass);
+					// untransformed classes are returned as they are
+					if (transformedClass != null && transformedClass != basicClass) {
+						this.result.classes.put(name, transformedClass);
+					}
+				} catch (StackOverflowError e) {
+					this.result.failures.put(name, e);
+				} catch (VirtualMachineError e) {
+					throw e;
+				} catch (Throwable e) {
+					// e.g. LinkageErrors and AssertionErrors of transformers
+					this.result.failures.put(name, e);
+				}
+			}
+		}
+
+	}
+
+	public static class Result {
+
+		private final Map<String, byte[]> classes = new ConcurrentHashMap<>();
+		private final Map<String, Throwable> failures = new ConcurrentHashMap<>();
+
+		private Result() {
+
+		}
+
+		/**
+		 * @return the transformed bytes of the classes which were transformed,
+		 *         classes which were not transformed or failed are not contained
+		 */
+		public Map<String, byte[]> classes() {
+			return Collections.unmodifiableMap(this.classes);
+		}
+
+		public Map<String, Throwable> failures() {
+			return Collections.unmodifiableMap(this.failures);
+		}
+
+		public boolean hasFailures() {
+			return !this.failures.isEmpty();
+		}
+
+	}
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Iterator;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.MultiANewArrayInsnNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/**
+ * Prints classes, methods and instructions in the format of
+ * {@link ASMUtil#classToString(ClassNode)} directly to an {@link Appendable}
+ * without building the whole dump in memory. Opcode and instruction type names
+ * are looked up in tables. The printer has no state and can be used by multiple
+ * threads.
+ */
+public final class BytecodePrinter {
+
+	private static final String[] OPCODE_NAMES = new String[256];
+	private static final Class<?>[] TYPE_CLASSES = { InsnNode.class, IntInsnNode.class, VarInsnNode.class,
+			TypeInsnNode.class, FieldInsnNode.class, MethodInsnNode.class, InvokeDynamicInsnNode.class,
+			JumpInsnNode.class, LabelNode.class, LdcInsnNode.class, IincInsnNode.class, TableSwitchInsnNode.class,
+			LookupSwitchInsnNode.class, MultiANewArrayInsnNode.class, FrameNode.class, LineNumberNode.class };
+	private static final String[] TYPE_NAMES = new String[TYPE_CLASSES.length];
+	static {
+		for (Field field : Opcodes.class.getFields()) {
+			String name = field.getName();
+			if (!Modifier.isStatic(field.getModifiers()) || field.getType() != int.class || name.startsWith("ASM")
+					|| name.startsWith("V") || name.startsWith("ACC_") || name.startsWith("T_")
+					|| name.startsWith("H_") || name.startsWith("F_")) {
+				continue;
+			}
+			try {
+				int opcode = field.getInt(null);
+				if (opcode >= 0 && opcode < OPCODE_NAMES.length && OPCODE_NAMES[opcode] == null) {
+					OPCODE_NAMES[opcode] = name;
+				}
+			} catch (IllegalAccessException e) {
+				// ignore
+			}
+		}
+		for (int i = 0; i < TYPE_CLASSES.length; i++) {
+			TYPE_NAMES[i] = TYPE_CLASSES[i].getSimpleName();
+		}
+	}
+
+	private BytecodePrinter() {
+
+	}
+
+	public static String opcodeName(int opcode) {
+		if (opcode >= 0 && opcode < OPCODE_NAMES.length && OPCODE_NAMES[opcode] != null) {
+			return OPCODE_NAMES[opcode];
+		}
+		return Integer.toString(opcode);
+	}
+
+	public static void printClass(ClassNode classNode, Appendable out) throws IOException {
+		out.append(classNode.name);
+		out.append('\n');
+		for (int i = 0; i < classNode.methods.size(); i++) {
+			if (i > 0) {
+				out.append("\n\n");
+			}
+			printMethod(classNode.methods.get(i), out);
+		}
+	}
+
+	public static void printMethod(MethodNode methodNode, Appendable out) throws IOException {
+		out.append(methodNode.name);
+		out.append(' ');
+		out.append(methodNode.desc);
+		out.append('\n');
+
+		int i = 0;
+		for (Iterator<AbstractInsnNode> iterator = methodNode.instructions.iterator(); iterator.hasNext();) {
+			AbstractInsnNode insn = iterator.next();
+			appendPadded(out, i, 3);
+			out.append(' ');
+			printInstruction(insn, out);
+			if (iterator.hasNext()) {
+				out.append('\n');
+			}
+			i++;
+		}
+	}
+
+	public static void printInstruction(AbstractInsnNode insn, Appendable out) throws IOException {
+		int type = insn.getType();
+		switch (type) {
+		case AbstractInsnNode.LABEL:
+		case AbstractInsnNode.LINE:
+		case AbstractInsnNode.FRAME:
+			appendPadded(out, "", 15);
+			break;
+		default:
+			appendPadded(out, opcodeName(insn.getOpcode()), 15);
+			break;
+		}
+		out.append(' ');
+		if (type >= 0 && type < TYPE_CLASSES.length && insn.getClass() == TYPE_CLASSES[type]) {
+			appendPadded(out, TYPE_NAMES[type], 22);
+		} else {
+			appendPadded(out, insn.getClass().getSimpleName(), 22);
+		}
+		out.append(' ');
+
+		switch (type) {
+		case AbstractInsnNode.INT_INSN:
+			out.append(Integer.toString(((IntInsnNode) insn).operand));
+			break;
+		case AbstractInsnNode.VAR_INSN:
+			out.append(Integer.toString(((VarInsnNode) insn).var));
+			break;
+		case AbstractInsnNode.TYPE_INSN:
+			out.append(((TypeInsnNode) insn).desc);
+			break;
+		case AbstractInsnNode.FIELD_INSN: {
+			FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+			out.append(fieldInsn.owner).append(' ').append(fieldInsn.name).append(' ').append(fieldInsn.desc);
+			break;
+		}
+		case AbstractInsnNode.METHOD_INSN: {
+			MethodInsnNode methodInsn = (MethodInsnNode) insn;
+			out.append(methodInsn.owner).append(' ').append(methodInsn.name).append(' ').append(methodInsn.desc);
+			break;
+		}
+		case AbstractInsnNode.JUMP_INSN:
+			out.append(((JumpInsnNode) insn).label.getLabel().toString());
+			break;
+		case AbstractInsnNode.LABEL:
+			out.append(((LabelNode) insn).getLabel().toString());
+			break;
+		case AbstractInsnNode.LDC_INSN:
+			out.append(String.valueOf(((LdcInsnNode) insn).cst));
+			break;
+		case AbstractInsnNode.FRAME: {
+			FrameNode frame = (FrameNode) insn;
+			out.append(String.valueOf(frame.local)).append(' ').append(String.valueOf(frame.stack));
+			break;
+		}
+		case AbstractInsnNode.LINE:
+			out.append(Integer.toString(((LineNumberNode) insn).line));
+			break;
+		default:
+			break;
+		}
+	}
+
+	private static void appendPadded(Appendable out, String s, int length) throws IOException {
+		for (int i = length - s.length(); i > 0; i--) {
+			out.append(' ');
+		}
+		out.append(s);
+	}
+
+	private static void appendPadded(Appendable out, int x, int length) throws IOException {
+		for (int i = length - stringSize(x); i > 0; i--) {
+			out.append(' ');
+		}
+		out.append(Integer.toString(x));
+	}
+
+	private static int stringSize(int x) {
+		int d = 1;
+		if (x >= 0) {
+			d = 0;
+			x = -x;
+		}
+		int p = -10;
+		for (int i = 1; i < 10; i++) {
+			if (x > p)
+				return i + d;
+			p = 10 * p;
+		}
+		return 10 + d;
+	}
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes exported classes on a single background thread. Classes are dropped
+ * when the writer falls behind, changed versions of an already exported class
+ * are written as {@code <name>.<n>.class}.
+ */
+final class ClassExporter {
+
+	private static final Path EXPORT_DIR = Paths.get(".meldexun/asm/export");
+	private static final Path EXPORT_ZIP = Paths.get(".meldexun/asm/export.zip");
+	private static final boolean ZIP = Boolean.parseBoolean(System.getProperty("meldexun.asm.exportZip"));
+	private static final int QUEUE_SIZE = Integer.getInteger("meldexun.asm.exportQueueSize", 1024);
+	private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000L;
+	private static ClassExporter defaultExporter;
+
+	private final Path target;
+	private final boolean zip;
+	private final BlockingQueue<Entry> queue;
+	private final Thread writerThread;
+	private volatile boolean closed;
+
+	// only accessed by the writer thread
+	private final Map<String, Set<ByteBuffer>> exportedHashes = new HashMap<>();
+	private final Set<Path> createdDirs = new HashSet<>();
+	private ZipOutputStream zipOutput;
+
+	ClassExporter(Path target, boolean zip, int queueSize) {
+		this.target = target;
+		this.zip = zip;
+		this.queue = new ArrayBlockingQueue<>(queueSize);
+		this.writerThread = new Thread(this::run, "ASMUtil Class Exporter");
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "ASMUtil Class Exporter Shutdown"));
+	}
+
+	static synchronized ClassExporter getDefault() {
+		if (defaultExporter == null) {
+			defaultExporter = new ClassExporter(ZIP ? EXPORT_ZIP : EXPORT_DIR, ZIP, QUEUE_SIZE);
+		}
+		return defaultExporter;
+	}
+
+	void export(String name, byte[] data) {
+		if (this.closed) {
+			ASMUtil.LOGGER.warn("Dropping exported class {}, exporter is closed", name);
+		} else if (!this.queue.offer(new Entry(name, data, null, false))) {
+			ASMUtil.LOGGER.warn("Dropping exported class {}, export queue is full", name);
+		}
+	}
+
+	/**
+	 * Waits until all classes queued so far are written. Returns early if the
+	 * exporter is closed.
+	 */
+	void flush() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		this.await(new Entry(null, null, latch, false), Long.MAX_VALUE);
+	}
+
+	private void shutdown() {
+		CountDownLatch latch = new CountDownLatch(1);
+		try {
+			this.await(new Entry(null, null, latch, true), System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Queues the entry and waits until the writer reached it, the writer is gone
+	 * or the deadline passed.
+	 */
+	private void await(Entry entry, long deadline) throws InterruptedException {
+		while (!this.queue.offer(entry, 100L, TimeUnit.MILLISECONDS)) {
+			if (this.closed || System.currentTimeMillis() >= deadline) {
+				return;
+			}
+		}
+		while (!entry.latch.await(100L, TimeUnit.MILLISECONDS)) {
+			if (!this.writerThread.isAlive() || System.currentTimeMillis() >= deadline) {
+				return;
+			}
+		}
+	}
+
+	private void run() {
+		try {
+			this.clean();
+		} catch (IOException | RuntimeException e) {
+			ASMUtil.LOGGER.error("Failed cleaning export target {}", this.target, e);
+		}
+		try {
+			while (true) {
+				Entry entry;
+				try {
+					entry = this.queue.take();
+				} catch (InterruptedException e) {
+					return;
+				}
+				if (entry.close) {
+					this.closed = true;
+					this.closeZip();
+					entry.latch.countDown();
+					return;
+				}
+				if (entry.latch != null) {
+					this.flushZip();
+					entry.latch.countDown();
+					continue;
+				}
+				try {
+					this.write(entry.name, entry.data);
+				} catch (IOException | RuntimeException e) {
+					ASMUtil.LOGGER.error("Failed exporting class: {}", entry.name, e);
+				}
+			}
+		} finally {
+			this.closed = true;
+		}
+	}
+
+	private void clean() throws IOException {
+		if (this.zip) {
+			Files.deleteIfExists(this.target);
+		} else {
+			FileUtil.deleteDirectory(this.target);
+		}
+	}
+
+	private void write(String name, byte[] data) throws IOException {
+		Set<ByteBuffer> hashes = this.exportedHashes.computeIfAbsent(name, k -> new HashSet<>());
+		if (!hashes.add(hash(data))) {
+			return;
+		}
+		String fileName = name.replace('.', '/');
+		if (hashes.size() > 1) {
+			fileName += "." + (hashes.size() - 1);
+		}
+		if (this.zip) {
+			ZipOutputStream out = this.zipOutput();
+			out.putNextEntry(new ZipEntry(fileName + ".class"));
+			out.write(data);
+			out.closeEntry();
+		} else {
+			Path file = this.target.resolve(fileName + ".class");
+			Path dir = file.getParent();
+			if (this.createdDirs.add(dir)) {
+				Files.createDirectories(dir);
+			}
+			Files.write(file, data);
+		}
+	}
+
+	private ZipOutputStream zipOutput() throws IOException {
+		if (this.zipOutput == null) {
+			Files.createDirectories(this.target.toAbsolutePath().getParent());
+			this.zipOutput = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(this.target)));
+		}
+		return this.zipOutput;
+	}
+
+	private void flushZip() {
+		if (this.zipOutput != null) {
+			try {
+				this.zipOutput.flush();
+			} catch (IOException e) {
+				ASMUtil.LOGGER.error("Failed flushing export target {}", this.target, e);
+			}
+		}
+	}
+
+	private void closeZip() {
+		if (this.zipOutput != null) {
+			try {
+				this.zipOutput.close();
+			} catch (IOException e) {
+				ASMUtil.LOGGER.error("Failed closing export target {}", this.target, e);
+			}
+		}
+	}
+
+	private static ByteBuffer hash(byte[] data) {
+		try {
+			return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(data));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static final class Entry {
+
+		final String name;
+		final byte[] data;
+		final CountDownLatch latch;
+		final boolean close;
+
+		Entry(String name, byte[] data, CountDownLatch latch, boolean close) {
+			this.name = name;
+			this.data = data;
+			this.latch = latch;
+			this.close = close;
+		}
+
+	}
+
+}
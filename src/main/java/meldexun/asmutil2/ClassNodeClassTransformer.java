@@ -5,10 +5,18 @@
 
 package meldexun.asmutil2;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import meldexun.asmutil2.MethodNodeTransformer.MethodScopedTransformer;
+import meldexun.asmutil2.reader.ClassUtil;
 
 public abstract class ClassNodeClassTransformer extends ClassVisitorClassTransformer<ClassNode> {
 
@@ -18,9 +26,27 @@ public abstract class ClassNodeClassTransformer extends ClassVisitorClassTransfo
 		if (transformers == null || transformers.isEmpty()) {
 			return null;
 		}
+		return createTransformInfo(transformers, this.getClassUtil());
+	}
+
+	/**
+	 * Frames and maximum stack and local sizes are only computed for the whole
+	 * class if a transformer that is not a {@link MethodScopedTransformer}
+	 * requested it. Otherwise they are only computed for the methods changed by
+	 * {@link MethodScopedTransformer}s which requested it.
+	 */
+	static ITransformInfo<ClassNode> createTransformInfo(List<ClassNodeTransformer> transformers,
+			ClassUtil classUtil) {
 		return new ITransformInfo<ClassNode>() {
+			private List<ClassNodeTransformer> applicableTransformers = transformers;
 			private int writeFlags;
 
+			@Override
+			public boolean canTransform(ClassReader classReader) {
+				this.applicableTransformers = applicableTransformers(transformers, classReader);
+				return !this.applicableTransformers.isEmpty();
+			}
+
 			@Override
 			public ClassNode visitor(Lazy<ClassWriter> classWriter) {
 				return new ClassNode();
@@ -29,16 +55,40 @@ public abstract class ClassNodeClassTransformer extends ClassVisitorClassTransfo
 			@Override
 			public boolean transform(ClassNode classVisitor, Lazy<ClassWriter> classWriter) {
 				boolean transformed = false;
-				for (ClassNodeTransformer transformer : transformers) {
-					if (transformer.transform(classVisitor)) {
+				Map<MethodNode, Integer> methodWriteFlags = new IdentityHashMap<>();
+				for (ClassNodeTransformer transformer : this.applicableTransformers) {
+					if (transformer instanceof MethodScopedTransformer) {
+						int writeFlags = transformer.writeFlags();
+						if (((MethodScopedTransformer) transformer).transform(classVisitor,
+								method -> methodWriteFlags.merge(method, writeFlags, (a, b) -> a | b))) {
+							transformed = true;
+						}
+					} else if (applyTransformer(transformer, classVisitor)) {
 						this.writeFlags |= transformer.writeFlags();
 						transformed = true;
 					}
 				}
-				if (transformed) {
-					classVisitor.accept(classWriter.get());
+				if (!transformed) {
+					return false;
+				}
+				if ((this.writeFlags & FrameComputer.COMPUTE_FLAGS) != 0) {
+					// computed for the whole class anyway
+					for (int writeFlags : methodWriteFlags.values()) {
+						this.writeFlags |= writeFlags;
+					}
+				} else {
+					List<MethodNode> methods = classVisitor.methods;
+					for (int i = 0; i < methods.size(); i++) {
+						Integer writeFlags = methodWriteFlags.get(methods.get(i));
+						if (writeFlags != null && (writeFlags & FrameComputer.COMPUTE_FLAGS) != 0) {
+							methods.set(i, FrameComputer.compute(classVisitor.version, classVisitor.access,
+									classVisitor.name, classVisitor.superName, methods.get(i),
+									writeFlags & FrameComputer.COMPUTE_FLAGS, classUtil));
+						}
+					}
 				}
-				return transformed;
+				classVisitor.accept(classWriter.get());
+				return true;
 			}
 
 			@Override
@@ -53,6 +103,91 @@ public abstract class ClassNodeClassTransformer extends ClassVisitorClassTransfo
 		};
 	}
 
+	private static boolean applyTransformer(ClassNodeTransformer transformer, ClassNode classNode) {
+		if (!TransformMetrics.ENABLED) {
+			return transformer.transform(classNode);
+		}
+		TransformMetrics.Counters metrics = TransformMetrics.forTransformer(transformer.name());
+		long start = System.nanoTime();
+		boolean transformed = transformer.transform(classNode);
+		metrics.transformNanos.add(System.nanoTime() - start);
+		metrics.calls.increment();
+		if (transformed) {
+			metrics.matches.increment();
+			metrics.writeFlags.accumulate(transformer.writeFlags());
+		}
+		return transformed;
+	}
+
+	/**
+	 * @return the transformers whose {@link ConstantPoolFilter} accepts the class
+	 */
+	static <T extends ClassNodeTransformer> List<T> applicableTransformers(List<T> transformers,
+			ClassReader classReader) {
+		List<T> applicableTransformers = null;
+		for (int i = 0; i < transformers.size(); i++) {
+			T transformer = transformers.get(i);
+			ConstantPoolFilter constantPoolFilter = transformer.constantPoolFilter();
+			if (constantPoolFilter == null || constantPoolFilter.test(classReader)) {
+				if (applicableTransformers != null) {
+					applicableTransformers.add(transformer);
+				}
+			} else if (applicableTransformers == null) {
+				applicableTransformers = new ArrayList<>(transformers.subList(0, i));
+			}
+		}
+		return applicableTransformers != null ? applicableTransformers : transformers;
+	}
+
+	@Override
+	protected String fingerprint(String name) {
+		List<ClassNodeTransformer> transformers = this.getClassNodeTransformers(name);
+		if (transformers == null || transformers.isEmpty()) {
+			return null;
+		}
+		return fingerprint(transformers, this.getClassUtil());
+	}
+
+	/**
+	 * @return {@code null} if a transformer is {@link ClassNodeTransformer#UNVERSIONED
+	 *         unversioned} or frames are computed and the class hierarchy can't be
+	 *         fingerprinted
+	 */
+	static String fingerprint(List<ClassNodeTransformer> transformers, ClassUtil classUtil) {
+		StringBuilder sb = new StringBuilder();
+		boolean computeFrames = false;
+		for (ClassNodeTransformer transformer : transformers) {
+			if (transformer.version() == ClassNodeTransformer.UNVERSIONED) {
+				return null;
+			}
+			computeFrames |= (transformer.writeFlags() & ClassWriter.COMPUTE_FRAMES) != 0;
+			sb.append(className(transformer));
+			sb.append(':').append(transformer.version());
+			sb.append(':').append(transformer.writeFlags());
+			sb.append(':').append(transformer.priority());
+			sb.append(';');
+		}
+		if (computeFrames) {
+			// frames depend on the hierarchy of the classes referenced by the class
+			String hierarchyFingerprint = classUtil.hierarchyFingerprint();
+			if (hierarchyFingerprint == null) {
+				return null;
+			}
+			sb.append(hierarchyFingerprint);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return the {@link ClassNodeTransformer#name() name} of the transformer
+	 *         without the suffix of lambda classes, which differs between runs
+	 */
+	private static String className(ClassNodeTransformer transformer) {
+		String name = transformer.name();
+		int lambda = name.indexOf("$$Lambda");
+		return lambda != -1 ? name.substring(0, lambda) : name;
+	}
+
 	protected abstract List<ClassNodeTransformer> getClassNodeTransformers(String className);
 
 }
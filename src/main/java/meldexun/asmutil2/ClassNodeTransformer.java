@@ -12,19 +12,49 @@ import org.objectweb.asm.tree.ClassNode;
 
 public interface ClassNodeTransformer extends Comparable<ClassNodeTransformer> {
 
+	/**
+	 * The {@link #version()} of transformers whose results must not be cached.
+	 */
+	int UNVERSIONED = -1;
+
 	boolean transform(ClassNode classNode);
 
 	int writeFlags();
 
 	int priority();
 
+	/**
+	 * Used as part of the fingerprint of cached transformation results. Has to be
+	 * increased whenever the behaviour of this transformer changes. Classes
+	 * targeted by an {@link #UNVERSIONED} transformer are not cached.
+	 */
+	default int version() {
+		return UNVERSIONED;
+	}
+
+	/**
+	 * @return a filter which rejects classes this transformer would not change or
+	 *         {@code null} if every class has to be passed to
+	 *         {@link #transform(ClassNode)}
+	 */
+	default ConstantPoolFilter constantPoolFilter() {
+		return null;
+	}
+
+	/**
+	 * Identifies this transformer in the {@link TransformMetrics}.
+	 */
+	default String name() {
+		return this.getClass().getName();
+	}
+
 	@Override
 	default int compareTo(ClassNodeTransformer o) {
 		return Integer.compare(priority(), o.priority());
 	}
 
 	static ClassNodeTransformer create(int writeFlags, Consumer<ClassNode> transformer) {
-		return create(writeFlags, classNode -> {
+		return create(writeFlags, 0, UNVERSIONED, null, transformer.getClass().getName(), classNode -> {
 			if (!ASMUtil.DISABLE_LOGGING) {
 				ASMUtil.LOGGER.info("Transforming class {}", classNode.name);
 			}
@@ -38,6 +68,21 @@ public interface ClassNodeTransformer extends Comparable<ClassNodeTransformer> {
 	}
 
 	static ClassNodeTransformer create(int writeFlags, int priority, Predicate<ClassNode> transformer) {
+		return create(writeFlags, priority, UNVERSIONED, transformer);
+	}
+
+	static ClassNodeTransformer create(int writeFlags, int priority, int version, Predicate<ClassNode> transformer) {
+		return create(writeFlags, priority, version, null, transformer);
+	}
+
+	static ClassNodeTransformer create(int writeFlags, int priority, int version,
+			ConstantPoolFilter constantPoolFilter, Predicate<ClassNode> transformer) {
+		return create(writeFlags, priority, version, constantPoolFilter, transformer.getClass().getName(),
+				transformer);
+	}
+
+	static ClassNodeTransformer create(int writeFlags, int priority, int version,
+			ConstantPoolFilter constantPoolFilter, String name, Predicate<ClassNode> transformer) {
 		return new ClassNodeTransformer() {
 
 			@Override
@@ -58,6 +103,21 @@ public interface ClassNodeTransformer extends Comparable<ClassNodeTransformer> {
 				return priority;
 			}
 
+			@Override
+			public int version() {
+				return version;
+			}
+
+			@Override
+			public ConstantPoolFilter constantPoolFilter() {
+				return constantPoolFilter;
+			}
+
+			@Override
+			public String name() {
+				return name;
+			}
+
 		};
 	}
 
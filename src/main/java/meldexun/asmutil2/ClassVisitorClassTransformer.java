@@ -9,6 +9,8 @@ import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 
+import meldexun.asmutil2.reader.ClassUtil;
+
 public abstract class ClassVisitorClassTransformer<T extends ClassVisitor> extends AbstractClassTransformer {
 
 	@Override
@@ -21,20 +23,78 @@ public abstract class ClassVisitorClassTransformer<T extends ClassVisitor> exten
 			ASMUtil.LOGGER.debug("Skipping transformation of non-existing class {}", name);
 			return null;
 		}
+		TransformMetrics.Counters metrics = TransformMetrics.ENABLED ? TransformMetrics.forClass(name) : null;
+		long start = metrics != null ? System.nanoTime() : 0L;
+		if (metrics != null) {
+			metrics.calls.increment();
+			metrics.bytesIn.add(basicClass.length);
+		}
+		TransformEvents.PhaseEvent event = TransformEvents.INSTANCE.beginPhase();
 		ClassReader classReader = new ClassReader(basicClass);
-		Lazy<ClassWriter> classWriter = new Lazy<>(() -> this.createClassWriter(transformInfo.writeFlags()));
+		if (!transformInfo.canTransform(classReader)) {
+			if (metrics != null) {
+				metrics.parseNanos.add(System.nanoTime() - start);
+			}
+			this.endPhase(event, "read", name, basicClass.length, 0);
+			return null;
+		}
+		Lazy<ClassWriter> classWriter = new Lazy<>(() -> {
+			if (transformInfo.copyClassReader()) {
+				return this.createClassWriter(classReader, transformInfo.writeFlags());
+			}
+			return this.createClassWriter(transformInfo.writeFlags());
+		});
 		T classVisitor = transformInfo.visitor(classWriter);
 		classReader.accept(classVisitor, transformInfo.readFlags());
+		this.endPhase(event, "read", name, basicClass.length, 0);
+		long parsed = metrics != null ? System.nanoTime() : 0L;
+		event = TransformEvents.INSTANCE.beginPhase();
 		if (!transformInfo.transform(classVisitor, classWriter)) {
+			if (metrics != null) {
+				metrics.parseNanos.add(parsed - start);
+				metrics.transformNanos.add(System.nanoTime() - parsed);
+			}
+			this.endPhase(event, "transform", name, basicClass.length, 0);
 			return null;
 		}
-		return classWriter.get().toByteArray();
+		this.endPhase(event, "transform", name, basicClass.length, 0);
+		long transformed = metrics != null ? System.nanoTime() : 0L;
+		event = TransformEvents.INSTANCE.beginPhase();
+		byte[] transformedClass = classWriter.get().toByteArray();
+		this.endPhase(event, "write", name, basicClass.length, transformedClass.length);
+		if (metrics != null) {
+			metrics.matches.increment();
+			metrics.parseNanos.add(parsed - start);
+			metrics.transformNanos.add(transformed - parsed);
+			metrics.writeNanos.add(System.nanoTime() - transformed);
+			metrics.bytesOut.add(transformedClass.length);
+			metrics.writeFlags.accumulate(transformInfo.writeFlags());
+		}
+		return transformedClass;
+	}
+
+	private void endPhase(TransformEvents.PhaseEvent event, String phase, String name, int bytesIn, int bytesOut) {
+		if (event != null) {
+			event.end(phase, name, this.getClass().getName(), bytesIn, bytesOut);
+		}
 	}
 
 	protected abstract ITransformInfo<T> getTransformInfo(String name);
 
 	protected ClassWriter createClassWriter(int flags) {
-		return new NonLoadingClassWriter(flags);
+		return new NonLoadingClassWriter(flags, this.getClassUtil());
+	}
+
+	protected ClassWriter createClassWriter(ClassReader classReader, int flags) {
+		return new NonLoadingClassWriter(classReader, flags, this.getClassUtil());
+	}
+
+	/**
+	 * @return the class hierarchy lookup used when computing frames, shared by all
+	 *         transformations of this transformer
+	 */
+	protected ClassUtil getClassUtil() {
+		return ClassUtil.DEFAULT;
 	}
 
 }
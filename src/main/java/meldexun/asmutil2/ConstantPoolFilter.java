@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+import java.util.Arrays;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Checks the raw constant pool of a class for {@code CONSTANT_Utf8} entries
+ * without parsing the class. A filter consists of one or more groups of
+ * constants. It accepts a class if every group has at least one constant which
+ * is present in the constant pool of the class.
+ */
+public final class ConstantPoolFilter {
+
+	private final byte[][][] groups;
+
+	private ConstantPoolFilter(byte[][][] groups) {
+		this.groups = groups;
+	}
+
+	public static ConstantPoolFilter anyOf(String... constants) {
+		byte[][] group = new byte[constants.length][];
+		for (int i = 0; i < constants.length; i++) {
+			group[i] = encode(constants[i]);
+		}
+		return new ConstantPoolFilter(new byte[][][] { group });
+	}
+
+	public ConstantPoolFilter and(ConstantPoolFilter other) {
+		byte[][][] groups = Arrays.copyOf(this.groups, this.groups.length + other.groups.length);
+		System.arraycopy(other.groups, 0, groups, this.groups.length, other.groups.length);
+		return new ConstantPoolFilter(groups);
+	}
+
+	public boolean test(ClassReader classReader) {
+		boolean[] satisfied = new boolean[this.groups.length];
+		int remaining = this.groups.length;
+		for (int i = 1; i < classReader.getItemCount(); i++) {
+			int offset = classReader.getItem(i);
+			// second slot of long and double constants
+			if (offset == 0) {
+				continue;
+			}
+			if (classReader.readByte(offset - 1) != 1) { // Utf8
+				continue;
+			}
+			int length = classReader.readUnsignedShort(offset);
+			for (int j = 0; j < this.groups.length; j++) {
+				if (!satisfied[j] && contains(this.groups[j], classReader, offset + 2, length)) {
+					satisfied[j] = true;
+					if (--remaining == 0) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean contains(byte[][] group, ClassReader classReader, int offset, int length) {
+		for (byte[] constant : group) {
+			if (constant.length == length && equals(constant, classReader, offset)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean equals(byte[] constant, ClassReader classReader, int offset) {
+		for (int i = 0; i < constant.length; i++) {
+			if ((constant[i] & 0xFF) != classReader.readByte(offset + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Encodes the string in the modified UTF-8 format used by class files.
+	 */
+	private static byte[] encode(String s) {
+		int length = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			length += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+		}
+		byte[] bytes = new byte[length];
+		int j = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c >= 0x0001 && c <= 0x007F) {
+				bytes[j++] = (byte) c;
+			} else if (c <= 0x07FF) {
+				bytes[j++] = (byte) (0xC0 | ((c >> 6) & 0x1F));
+				bytes[j++] = (byte) (0x80 | (c & 0x3F));
+			} else {
+				bytes[j++] = (byte) (0xE0 | ((c >> 12) & 0x0F));
+				bytes[j++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				bytes[j++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		return bytes;
+	}
+
+}
@@ -6,13 +6,59 @@
 package meldexun.asmutil2;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.CRC32;
 
-class FileUtil {
+public final class FileUtil {
+
+	public static final String TEMP_SUFFIX = ".tmp";
+
+	private FileUtil() {
+
+	}
+
+	/**
+	 * Writes the bytes to a temporary file in the same directory and moves it over
+	 * the file, so readers never see a partially written file.
+	 */
+	public static void writeAtomically(Path file, byte[] bytes) throws IOException {
+		Path dir = file.toAbsolutePath().getParent();
+		Files.createDirectories(dir);
+		Path tempFile = Files.createTempFile(dir, file.getFileName().toString(), TEMP_SUFFIX);
+		try {
+			Files.write(tempFile, bytes);
+			try {
+				Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	public static int checksum(byte[] bytes, int offset, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, offset, length);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * @return the checksum of the remaining bytes, the position of the buffer is
+	 *         not changed
+	 */
+	public static int checksum(ByteBuffer buffer) {
+		CRC32 crc = new CRC32();
+		crc.update(buffer.duplicate());
+		return (int) crc.getValue();
+	}
 
 	static void deleteDirectory(Path dir) throws IOException {
 		if (Files.exists(dir)) {
@@ -32,9 +78,4 @@ class FileUtil {
 		}
 	}
 
-	static void writeFile(Path file, byte[] data) throws IOException {
-		Files.createDirectories(file.getParent());
-		Files.write(file, data);
-	}
-
 }
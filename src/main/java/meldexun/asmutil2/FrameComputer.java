@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import meldexun.asmutil2.reader.ClassUtil;
+
+/**
+ * Computes stack map frames and maximum stack and local sizes for single
+ * methods. The method is written into a stub class containing only that method
+ * using a {@link ClassWriter} with the requested flags and read back. This
+ * allows the remaining methods of a class to be written without recomputing
+ * their frames.
+ */
+final class FrameComputer {
+
+	static final int COMPUTE_FLAGS = ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES;
+
+	private FrameComputer() {
+
+	}
+
+	/**
+	 * @param flags {@link ClassWriter#COMPUTE_MAXS} and/or
+	 *              {@link ClassWriter#COMPUTE_FRAMES}
+	 * @return a copy of the method with recomputed frames and/or maximum stack
+	 *         and local sizes
+	 */
+	static MethodNode compute(int version, int access, String className, String superName, MethodNode method,
+			int flags, ClassUtil classUtil) {
+		ClassWriter classWriter = new NonLoadingClassWriter(flags, classUtil);
+		classWriter.visit(version, access, className, null, superName, null);
+		method.accept(classWriter);
+		classWriter.visitEnd();
+		ClassNode classNode = new ClassNode();
+		new ClassReader(classWriter.toByteArray()).accept(classNode, 0);
+		return classNode.methods.get(0);
+	}
+
+}
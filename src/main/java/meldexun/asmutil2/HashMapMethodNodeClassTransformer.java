@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public abstract class HashMapMethodNodeClassTransformer extends MethodNodeClassTransformer {
+
+	private final Map<String, List<ClassNodeTransformer>> classTransformers = new HashMap<>();
+
+	protected HashMapMethodNodeClassTransformer() {
+		this.registerTransformers((className, transformer) -> {
+			this.classTransformers.computeIfAbsent(className, k -> SortedArrayList.create()).add(transformer);
+		});
+	}
+
+	protected abstract void registerTransformers(IClassTransformerRegistry registry);
+
+	@Override
+	protected List<ClassNodeTransformer> getClassNodeTransformers(String className) {
+		return this.classTransformers.get(className);
+	}
+
+}
@@ -9,11 +9,22 @@ import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 
 public interface ITransformInfo<T extends ClassVisitor> {
 
+	/**
+	 * Called before the class is parsed.
+	 * 
+	 * @return {@code false} if the class will not be transformed and parsing it
+	 *         can be skipped
+	 */
+	default boolean canTransform(ClassReader classReader) {
+		return true;
+	}
+
 	T visitor(Lazy<ClassWriter> classWriter);
 
 	boolean transform(T classVisitor, Lazy<ClassWriter> classWriter);
@@ -22,6 +33,18 @@ public interface ITransformInfo<T extends ClassVisitor> {
 
 	int readFlags();
 
+	/**
+	 * Whether the class writer may be created from the class reader. This copies
+	 * the constant pool of the original class and lets ASM copy methods which are
+	 * passed unchanged from the class reader to the class writer byte by byte.
+	 * Unused constants of the original class are kept.
+	 * 
+	 * @see ClassWriter#ClassWriter(ClassReader, int)
+	 */
+	default boolean copyClassReader() {
+		return false;
+	}
+
 	static <T extends ClassVisitor> ITransformInfo<T> create(Supplier<T> classVisitorFactory,
 			BiPredicate<T, Lazy<ClassWriter>> transformFunction, int writeFlags, int readFlags) {
 		return createTransformInfo(classWriter -> classVisitorFactory.get(), transformFunction, writeFlags, readFlags);
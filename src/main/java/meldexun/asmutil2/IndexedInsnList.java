@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * An {@link InsnList} with a lazily built index of its instructions by opcode
+ * and by method and field instruction owner/name/desc, used by
+ * {@link InsnFinder}. Call {@link #invalidate()} after changing an instruction
+ * which is already in the list. Not thread safe.
+ */
+public class IndexedInsnList extends InsnList {
+
+	private Index index;
+	private int unindexedFinds;
+
+	/**
+	 * Replaces the instructions of the method with an {@link IndexedInsnList}
+	 * containing the same instructions. References to the previous instruction
+	 * list must not be used afterwards.
+	 */
+	public static IndexedInsnList attach(MethodNode method) {
+		if (method.instructions instanceof IndexedInsnList) {
+			return (IndexedInsnList) method.instructions;
+		}
+		IndexedInsnList instructions = new IndexedInsnList();
+		instructions.add(method.instructions);
+		method.instructions = instructions;
+		return instructions;
+	}
+
+	public void invalidate() {
+		this.index = null;
+		this.unindexedFinds = 0;
+	}
+
+	public List<AbstractInsnNode> opcodeInsns(int opcode) {
+		return this.index().opcode(opcode).asList();
+	}
+
+	public List<MethodInsnNode> methodInsns(String name) {
+		return this.index().methodInsns(name).asList();
+	}
+
+	public List<MethodInsnNode> methodInsns(String owner, String name, String desc) {
+		return this.index().methodInsns(owner, name, desc).asList();
+	}
+
+	public List<FieldInsnNode> fieldInsns(String name) {
+		return this.index().fieldInsns(name).asList();
+	}
+
+	public List<FieldInsnNode> fieldInsns(String owner, String name, String desc) {
+		return this.index().fieldInsns(owner, name, desc).asList();
+	}
+
+	Index index() {
+		Index index = this.index;
+		if (index == null || !index.isValid(this)) {
+			index = new Index(this);
+			this.index = index;
+		}
+		return index;
+	}
+
+	/**
+	 * Used by {@link InsnFinder}. Only builds the index on the second search since
+	 * the last modification so that alternating searches and modifications walk
+	 * the list instead of rebuilding the index each time.
+	 * 
+	 * @return the index or {@code null} if the list should be searched linearly
+	 */
+	Index findIndex() {
+		Index index = this.index;
+		if (index != null && index.isValid(this)) {
+			return index;
+		}
+		if (this.unindexedFinds++ == 0) {
+			this.index = null;
+			return null;
+		}
+		return this.index();
+	}
+
+	@Override
+	public void set(AbstractInsnNode oldInsn, AbstractInsnNode newInsn) {
+		super.set(oldInsn, newInsn);
+		this.invalidate();
+	}
+
+	@Override
+	public void add(AbstractInsnNode insn) {
+		super.add(insn);
+		this.invalidate();
+	}
+
+	@Override
+	public void add(InsnList insns) {
+		super.add(insns);
+		this.invalidate();
+	}
+
+	@Override
+	public void insert(AbstractInsnNode insn) {
+		super.insert(insn);
+		this.invalidate();
+	}
+
+	@Override
+	public void insert(InsnList insns) {
+		super.insert(insns);
+		this.invalidate();
+	}
+
+	@Override
+	public void insert(AbstractInsnNode location, AbstractInsnNode insn) {
+		super.insert(location, insn);
+		this.invalidate();
+	}
+
+	@Override
+	public void insert(AbstractInsnNode location, InsnList insns) {
+		super.insert(location, insns);
+		this.invalidate();
+	}
+
+	@Override
+	public void insertBefore(AbstractInsnNode location, AbstractInsnNode insn) {
+		super.insertBefore(location, insn);
+		this.invalidate();
+	}
+
+	@Override
+	public void insertBefore(AbstractInsnNode location, InsnList insns) {
+		super.insertBefore(location, insns);
+		this.invalidate();
+	}
+
+	@Override
+	public void remove(AbstractInsnNode insn) {
+		super.remove(insn);
+		this.invalidate();
+	}
+
+	@Override
+	public void clear() {
+		super.clear();
+		this.invalidate();
+	}
+
+	static final class Index {
+
+		private static final Bucket EMPTY = new Bucket();
+		private final Bucket[] opcodes = new Bucket[256];
+		private final Map<String, Bucket> methodNames = new HashMap<>();
+		private final Map<Key, Bucket> methodKeys = new HashMap<>();
+		private final Map<String, Bucket> fieldNames = new HashMap<>();
+		private final Map<Key, Bucket> fieldKeys = new HashMap<>();
+		private final int size;
+		private final AbstractInsnNode first;
+		private final AbstractInsnNode last;
+
+		Index(InsnList instructions) {
+			this.size = instructions.size();
+			this.first = instructions.getFirst();
+			this.last = instructions.getLast();
+			int position = 0;
+			for (AbstractInsnNode insn = instructions.getFirst(); insn != null; insn = insn.getNext(), position++) {
+				int opcode = insn.getOpcode();
+				if (opcode < 0) {
+					continue;
+				}
+				Bucket bucket = this.opcodes[opcode];
+				if (bucket == null) {
+					bucket = new Bucket();
+					this.opcodes[opcode] = bucket;
+				}
+				bucket.add(insn, position);
+
+				if (insn instanceof MethodInsnNode) {
+					MethodInsnNode methodInsn = (MethodInsnNode) insn;
+					add(this.methodNames, methodInsn.name, insn, position);
+					add(this.methodKeys, new Key(methodInsn.owner, methodInsn.name, methodInsn.desc), insn, position);
+				} else if (insn instanceof FieldInsnNode) {
+					FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+					add(this.fieldNames, fieldInsn.name, insn, position);
+					add(this.fieldKeys, new Key(fieldInsn.owner, fieldInsn.name, fieldInsn.desc), insn, position);
+				}
+			}
+		}
+
+		boolean isValid(InsnList instructions) {
+			return instructions.size() == this.size && instructions.getFirst() == this.first
+					&& instructions.getLast() == this.last;
+		}
+
+		private static <K> void add(Map<K, Bucket> map, K key, AbstractInsnNode insn, int position) {
+			map.computeIfAbsent(key, k -> new Bucket()).add(insn, position);
+		}
+
+		Bucket opcode(int opcode) {
+			Bucket bucket = opcode >= 0 && opcode < this.opcodes.length ? this.opcodes[opcode] : null;
+			return bucket != null ? bucket : EMPTY;
+		}
+
+		Bucket methodInsns(String name) {
+			return this.methodNames.getOrDefault(name, EMPTY);
+		}
+
+		Bucket methodInsns(String owner, String name, String desc) {
+			return this.methodKeys.getOrDefault(new Key(owner, name, desc), EMPTY);
+		}
+
+		Bucket fieldInsns(String name) {
+			return this.fieldNames.getOrDefault(name, EMPTY);
+		}
+
+		Bucket fieldInsns(String owner, String name, String desc) {
+			return this.fieldKeys.getOrDefault(new Key(owner, name, desc), EMPTY);
+		}
+
+	}
+
+	/**
+	 * Instructions with their position in the list, in list order.
+	 */
+	static final class Bucket {
+
+		AbstractInsnNode[] insns = new AbstractInsnNode[4];
+		int[] positions = new int[4];
+		int size;
+
+		void add(AbstractInsnNode insn, int position) {
+			if (this.size == this.insns.length) {
+				this.insns = Arrays.copyOf(this.insns, this.size * 2);
+				this.positions = Arrays.copyOf(this.positions, this.size * 2);
+			}
+			this.insns[this.size] = insn;
+			this.positions[this.size] = position;
+			this.size++;
+		}
+
+		/**
+		 * @return the index of the first instruction at or after the position
+		 */
+		int ceil(int position) {
+			int low = 0;
+			int high = this.size - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				if (this.positions[mid] < position) {
+					low = mid + 1;
+				} else {
+					high = mid - 1;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * @return the index of the last instruction at or before the position
+		 */
+		int floor(int position) {
+			return this.ceil(position + 1) - 1;
+		}
+
+		@SuppressWarnings("unchecked")
+		<T extends AbstractInsnNode> List<T> asList() {
+			return (List<T>) Collections.unmodifiableList(Arrays.asList(this.insns).subList(0, this.size));
+		}
+
+	}
+
+	private static final class Key {
+
+		private final String owner;
+		private final String name;
+		private final String desc;
+		private final int hash;
+
+		Key(String owner, String name, String desc) {
+			this.owner = owner;
+			this.name = name;
+			this.desc = desc;
+			this.hash = Objects.hash(owner, name, desc);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return this.hash == other.hash && Objects.equals(this.owner, other.owner)
+					&& Objects.equals(this.name, other.name) && Objects.equals(this.desc, other.desc);
+		}
+
+	}
+
+}
@@ -20,10 +20,15 @@ import org.objectweb.asm.tree.MethodNode;
 import org.objectweb.asm.tree.TypeInsnNode;
 import org.objectweb.asm.tree.VarInsnNode;
 
+import meldexun.asmutil2.IndexedInsnList.Bucket;
+import meldexun.asmutil2.IndexedInsnList.Index;
+
 public class InsnFinder<T extends AbstractInsnNode> {
 
 	private static final UnaryOperator<AbstractInsnNode> NEXT = AbstractInsnNode::getNext;
 	private static final UnaryOperator<AbstractInsnNode> PREVIOUS = AbstractInsnNode::getPrevious;
+	private static final int METHOD_INSN = 1;
+	private static final int FIELD_INSN = 2;
 	private final MethodNode method;
 	private final AbstractInsnNode startInclusive;
 	private final UnaryOperator<AbstractInsnNode> advance;
@@ -32,6 +37,10 @@ public class InsnFinder<T extends AbstractInsnNode> {
 	private Predicate<T> predicate;
 	private Consumer<StringBuilder> errorDetails;
 	private int ordinal;
+	private int indexKind;
+	private String[] indexOwners;
+	private String[] indexNames;
+	private String[] indexDescs;
 
 	public InsnFinder(MethodNode method, AbstractInsnNode startInclusive, UnaryOperator<AbstractInsnNode> advance) {
 		this.method = Objects.requireNonNull(method);
@@ -167,69 +176,83 @@ public class InsnFinder<T extends AbstractInsnNode> {
 	}
 
 	public InsnFinder<MethodInsnNode> methodInsn(String name) {
-		return this.type(MethodInsnNode.class).predicate(SignatureMatcher.matchingMethodInsnName(name));
+		return this.type(MethodInsnNode.class).predicate(SignatureMatcher.matchingMethodInsnName(name))
+				.indexed(METHOD_INSN, null, names(name), null);
 	}
 
 	public InsnFinder<MethodInsnNode> methodInsnObf(String name, String obfName) {
-		return this.type(MethodInsnNode.class).predicate(SignatureMatcher.matchingMethodInsnNameObf(name, obfName));
+		return this.type(MethodInsnNode.class).predicate(SignatureMatcher.matchingMethodInsnNameObf(name, obfName))
+				.indexed(METHOD_INSN, null, names(name, obfName), null);
 	}
 
 	public InsnFinder<MethodInsnNode> methodInsn(String name, String desc) {
-		return this.type(MethodInsnNode.class).predicate(SignatureMatcher.matchingMethodInsnNameDesc(name, desc));
+		return this.type(MethodInsnNode.class).predicate(SignatureMatcher.matchingMethodInsnNameDesc(name, desc))
+				.indexed(METHOD_INSN, null, names(name), null);
 	}
 
 	public InsnFinder<MethodInsnNode> methodInsnObf(String name, String obfName, String desc) {
 		return this.type(MethodInsnNode.class)
-				.predicate(SignatureMatcher.matchingMethodInsnNameDescObf(name, obfName, desc));
+				.predicate(SignatureMatcher.matchingMethodInsnNameDescObf(name, obfName, desc))
+				.indexed(METHOD_INSN, null, names(name, obfName), null);
 	}
 
 	public InsnFinder<MethodInsnNode> methodInsn(String owner, String name, String desc) {
 		return this.type(MethodInsnNode.class)
-				.predicate(SignatureMatcher.matchingMethodInsnOwnerNameDesc(owner, name, desc));
+				.predicate(SignatureMatcher.matchingMethodInsnOwnerNameDesc(owner, name, desc))
+				.indexed(METHOD_INSN, names(owner), names(name), names(desc));
 	}
 
 	public InsnFinder<MethodInsnNode> methodInsnObf(String owner, String name, String obfName, String desc) {
 		return this.type(MethodInsnNode.class)
-				.predicate(SignatureMatcher.matchingMethodInsnOwnerNameDescObf(owner, name, obfName, desc));
+				.predicate(SignatureMatcher.matchingMethodInsnOwnerNameDescObf(owner, name, obfName, desc))
+				.indexed(METHOD_INSN, names(owner), names(name, obfName), names(desc));
 	}
 
 	public InsnFinder<MethodInsnNode> methodInsnObf(String owner, String name, String desc, String obfOwner,
 			String obfName, String obfDesc) {
 		return this.type(MethodInsnNode.class).predicate(
-				SignatureMatcher.matchingMethodInsnOwnerNameDescObf(owner, obfOwner, name, obfName, desc, obfDesc));
+				SignatureMatcher.matchingMethodInsnOwnerNameDescObf(owner, obfOwner, name, obfName, desc, obfDesc))
+				.indexed(METHOD_INSN, names(owner, obfOwner), names(name, obfName), names(desc, obfDesc));
 	}
 
 	public InsnFinder<FieldInsnNode> fieldInsn(String name) {
-		return this.type(FieldInsnNode.class).predicate(SignatureMatcher.matchingFieldInsnName(name));
+		return this.type(FieldInsnNode.class).predicate(SignatureMatcher.matchingFieldInsnName(name))
+				.indexed(FIELD_INSN, null, names(name), null);
 	}
 
 	public InsnFinder<FieldInsnNode> fieldInsnObf(String name, String obfName) {
-		return this.type(FieldInsnNode.class).predicate(SignatureMatcher.matchingFieldInsnNameObf(name, obfName));
+		return this.type(FieldInsnNode.class).predicate(SignatureMatcher.matchingFieldInsnNameObf(name, obfName))
+				.indexed(FIELD_INSN, null, names(name, obfName), null);
 	}
 
 	public InsnFinder<FieldInsnNode> fieldInsn(String name, String desc) {
-		return this.type(FieldInsnNode.class).predicate(SignatureMatcher.matchingFieldInsnNameDesc(name, desc));
+		return this.type(FieldInsnNode.class).predicate(SignatureMatcher.matchingFieldInsnNameDesc(name, desc))
+				.indexed(FIELD_INSN, null, names(name), null);
 	}
 
 	public InsnFinder<FieldInsnNode> fieldInsnObf(String name, String obfName, String desc) {
 		return this.type(FieldInsnNode.class)
-				.predicate(SignatureMatcher.matchingFieldInsnNameDescObf(name, obfName, desc));
+				.predicate(SignatureMatcher.matchingFieldInsnNameDescObf(name, obfName, desc))
+				.indexed(FIELD_INSN, null, names(name, obfName), null);
 	}
 
 	public InsnFinder<FieldInsnNode> fieldInsn(String owner, String name, String desc) {
 		return this.type(FieldInsnNode.class)
-				.predicate(SignatureMatcher.matchingFieldInsnOwnerNameDesc(owner, name, desc));
+				.predicate(SignatureMatcher.matchingFieldInsnOwnerNameDesc(owner, name, desc))
+				.indexed(FIELD_INSN, names(owner), names(name), names(desc));
 	}
 
 	public InsnFinder<FieldInsnNode> fieldInsnObf(String owner, String name, String obfName, String desc) {
 		return this.type(FieldInsnNode.class)
-				.predicate(SignatureMatcher.matchingFieldInsnOwnerNameDescObf(owner, name, obfName, desc));
+				.predicate(SignatureMatcher.matchingFieldInsnOwnerNameDescObf(owner, name, obfName, desc))
+				.indexed(FIELD_INSN, names(owner), names(name, obfName), names(desc));
 	}
 
 	public InsnFinder<FieldInsnNode> fieldInsnObf(String owner, String name, String desc, String obfOwner,
 			String obfName, String obfDesc) {
 		return this.type(FieldInsnNode.class).predicate(
-				SignatureMatcher.matchingFieldInsnOwnerNameDescObf(owner, obfOwner, name, obfName, desc, obfDesc));
+				SignatureMatcher.matchingFieldInsnOwnerNameDescObf(owner, obfOwner, name, obfName, desc, obfDesc))
+				.indexed(FIELD_INSN, names(owner, obfOwner), names(name, obfName), names(desc, obfDesc));
 	}
 
 	public InsnFinder<T> predicate(SignatureMatcher<T> signatureMatcher) {
@@ -239,9 +262,26 @@ public class InsnFinder<T extends AbstractInsnNode> {
 	public InsnFinder<T> predicate(Predicate<T> predicate, Consumer<StringBuilder> errorDetails) {
 		this.predicate = predicate;
 		this.errorDetails = errorDetails;
+		this.indexKind = 0;
+		return this;
+	}
+
+	private InsnFinder<T> indexed(int kind, String[] owners, String[] names, String[] descs) {
+		this.indexKind = kind;
+		this.indexOwners = owners;
+		this.indexNames = names;
+		this.indexDescs = descs;
 		return this;
 	}
 
+	private static String[] names(String name) {
+		return new String[] { name };
+	}
+
+	private static String[] names(String name, String obfName) {
+		return name.equals(obfName) ? new String[] { name } : new String[] { name, obfName };
+	}
+
 	public InsnFinder<T> ordinal(int ordinal) {
 		this.ordinal = ordinal;
 		return this;
@@ -249,12 +289,19 @@ public class InsnFinder<T extends AbstractInsnNode> {
 
 	@SuppressWarnings("unchecked")
 	public T find() {
-		int i = 0;
-		AbstractInsnNode insn = this.startInclusive;
-		while (insn != null && (this.type != null && !this.type.isInstance(insn)
-				|| this.opcode >= 0 && insn.getOpcode() != this.opcode
-				|| this.predicate != null && !this.predicate.test((T) insn) || i++ != this.ordinal)) {
-			insn = this.advance.apply(insn);
+		AbstractInsnNode insn;
+		Index index;
+		Bucket[] buckets;
+		if ((this.advance == NEXT || this.advance == PREVIOUS) && this.method.instructions instanceof IndexedInsnList
+				&& (index = ((IndexedInsnList) this.method.instructions).findIndex()) != null
+				&& (buckets = this.buckets(index)) != null) {
+			insn = this.findIndexed(buckets);
+		} else {
+			int i = 0;
+			insn = this.startInclusive;
+			while (insn != null && (!this.matches(insn) || i++ != this.ordinal)) {
+				insn = this.advance.apply(insn);
+			}
 		}
 		if (insn == null) {
 			StringBuilder sb = new StringBuilder();
@@ -288,4 +335,74 @@ public class InsnFinder<T extends AbstractInsnNode> {
 		return (T) insn;
 	}
 
+	@SuppressWarnings("unchecked")
+	private boolean matches(AbstractInsnNode insn) {
+		return (this.type == null || this.type.isInstance(insn))
+				&& (this.opcode < 0 || insn.getOpcode() == this.opcode)
+				&& (this.predicate == null || this.predicate.test((T) insn));
+	}
+
+	/**
+	 * @return the index buckets containing all candidates or {@code null} if the
+	 *         index can't narrow down the candidates
+	 */
+	private Bucket[] buckets(Index index) {
+		if (this.indexKind == 0) {
+			return this.opcode >= 0 ? new Bucket[] { index.opcode(this.opcode) } : null;
+		}
+		boolean method = this.indexKind == METHOD_INSN;
+		if (this.indexOwners == null || this.indexDescs == null) {
+			Bucket[] buckets = new Bucket[this.indexNames.length];
+			for (int i = 0; i < buckets.length; i++) {
+				buckets[i] = method ? index.methodInsns(this.indexNames[i]) : index.fieldInsns(this.indexNames[i]);
+			}
+			return buckets;
+		}
+		Bucket[] buckets = new Bucket[this.indexOwners.length * this.indexNames.length * this.indexDescs.length];
+		int i = 0;
+		for (String owner : this.indexOwners) {
+			for (String name : this.indexNames) {
+				for (String desc : this.indexDescs) {
+					buckets[i++] = method ? index.methodInsns(owner, name, desc) : index.fieldInsns(owner, name, desc);
+				}
+			}
+		}
+		return buckets;
+	}
+
+	/**
+	 * Visits the candidates of all buckets in list order starting at
+	 * {@link #startInclusive}. The buckets contain distinct instructions.
+	 */
+	private AbstractInsnNode findIndexed(Bucket[] buckets) {
+		boolean forward = this.advance == NEXT;
+		int start = this.method.instructions.indexOf(this.startInclusive);
+		int[] cursors = new int[buckets.length];
+		for (int j = 0; j < buckets.length; j++) {
+			cursors[j] = forward ? buckets[j].ceil(start) : buckets[j].floor(start);
+		}
+		int i = 0;
+		while (true) {
+			int next = -1;
+			for (int j = 0; j < buckets.length; j++) {
+				int cursor = cursors[j];
+				if (cursor < 0 || cursor >= buckets[j].size) {
+					continue;
+				}
+				if (next < 0 || (forward ? buckets[j].positions[cursor] < buckets[next].positions[cursors[next]]
+						: buckets[j].positions[cursor] > buckets[next].positions[cursors[next]])) {
+					next = j;
+				}
+			}
+			if (next < 0) {
+				return null;
+			}
+			AbstractInsnNode insn = buckets[next].insns[cursors[next]];
+			cursors[next] += forward ? 1 : -1;
+			if (this.matches(insn) && i++ == this.ordinal) {
+				return insn;
+			}
+		}
+	}
+
 }
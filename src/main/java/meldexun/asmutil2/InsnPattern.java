@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+
+/**
+ * A sequence of instruction matchers, e.g. {@code ALOAD, GETFIELD f,
+ * INVOKEVIRTUAL m}. Each element matches one instruction and can be repeated
+ * and captured by name. Labels, line numbers and frames are skipped and never
+ * matched. Patterns are compiled with {@link InsnPatternMatcher#compile}.
+ *
+ * <pre>
+ * InsnPattern pattern = InsnPattern.builder()
+ * 		.opcode(Opcodes.ALOAD).capture("instance")
+ * 		.fieldInsn(SignatureMatcher.matchingFieldInsnName("field"))
+ * 		.any().zeroOrMore()
+ * 		.methodInsn(SignatureMatcher.matchingMethodInsnName("method")).capture("call")
+ * 		.build();
+ * </pre>
+ */
+public final class InsnPattern {
+
+	private final List<Element> elements;
+
+	private InsnPattern(List<Element> elements) {
+		this.elements = elements;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	List<Element> elements() {
+		return this.elements;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Element element : this.elements) {
+			if (sb.length() > 0) {
+				sb.append(", ");
+			}
+			element.appendTo(sb);
+		}
+		return sb.toString();
+	}
+
+	public static class Builder {
+
+		private final List<Element> elements = new ArrayList<>();
+
+		/**
+		 * Matches any instruction.
+		 */
+		public Builder any() {
+			return this.add(new Element(-1, null, null, "any"));
+		}
+
+		public Builder opcode(int opcode) {
+			return this.add(new Element(opcode, null, null, ASMUtil.opcodeName(opcode)));
+		}
+
+		public Builder type(Class<? extends AbstractInsnNode> type) {
+			return this.add(new Element(-1, type, null, type.getSimpleName()));
+		}
+
+		public <T extends AbstractInsnNode> Builder type(Class<T> type, Predicate<T> predicate) {
+			return this.insn(-1, type, predicate);
+		}
+
+		public Builder insn(int opcode, Predicate<AbstractInsnNode> predicate) {
+			return this.insn(opcode, AbstractInsnNode.class, predicate);
+		}
+
+		/**
+		 * @param opcode the opcode or {@code -1} to match any opcode
+		 */
+		@SuppressWarnings("unchecked")
+		public <T extends AbstractInsnNode> Builder insn(int opcode, Class<T> type, Predicate<T> predicate) {
+			StringBuilder sb = new StringBuilder();
+			if (opcode >= 0) {
+				sb.append(ASMUtil.opcodeName(opcode)).append(" ");
+			}
+			sb.append(type.getSimpleName());
+			if (predicate instanceof SignatureMatcher) {
+				sb.append("(");
+				((SignatureMatcher<T>) predicate).accept(sb);
+				sb.append(")");
+			}
+			return this.add(new Element(opcode, type, (Predicate<AbstractInsnNode>) predicate, sb.toString()));
+		}
+
+		public Builder methodInsn(SignatureMatcher<MethodInsnNode> matcher) {
+			return this.insn(-1, MethodInsnNode.class, matcher);
+		}
+
+		public Builder methodInsn(int opcode, SignatureMatcher<MethodInsnNode> matcher) {
+			return this.insn(opcode, MethodInsnNode.class, matcher);
+		}
+
+		public Builder fieldInsn(SignatureMatcher<FieldInsnNode> matcher) {
+			return this.insn(-1, FieldInsnNode.class, matcher);
+		}
+
+		public Builder fieldInsn(int opcode, SignatureMatcher<FieldInsnNode> matcher) {
+			return this.insn(opcode, FieldInsnNode.class, matcher);
+		}
+
+		/**
+		 * Captures the instructions matched by the previous element. If the element
+		 * is repeated the last matched instruction is returned by
+		 * {@link InsnPatternMatcher.Match#get(String)}.
+		 */
+		public Builder capture(String name) {
+			this.last().capture = Objects.requireNonNull(name);
+			return this;
+		}
+
+		public Builder optional() {
+			return this.repeat(0, 1);
+		}
+
+		public Builder zeroOrMore() {
+			return this.repeat(0, -1);
+		}
+
+		public Builder oneOrMore() {
+			return this.repeat(1, -1);
+		}
+
+		/**
+		 * Repeats the previous element. Repetitions are greedy.
+		 *
+		 * @param max the maximum number of repetitions or {@code -1} for unbounded
+		 */
+		public Builder repeat(int min, int max) {
+			if (min < 0 || max >= 0 && max < min) {
+				throw new IllegalArgumentException("Invalid repetition: " + min + ".." + max);
+			}
+			Element last = this.last();
+			last.min = min;
+			last.max = max;
+			return this;
+		}
+
+		private Builder add(Element element) {
+			this.elements.add(element);
+			return this;
+		}
+
+		private Element last() {
+			if (this.elements.isEmpty()) {
+				throw new IllegalStateException("No element added");
+			}
+			return this.elements.get(this.elements.size() - 1);
+		}
+
+		public InsnPattern build() {
+			if (this.elements.stream().allMatch(element -> element.min == 0)) {
+				throw new IllegalStateException("Pattern must match at least one instruction");
+			}
+			List<Element> elements = new ArrayList<>(this.elements.size());
+			for (Element element : this.elements) {
+				elements.add(element.copy());
+			}
+			return new InsnPattern(Collections.unmodifiableList(elements));
+		}
+
+	}
+
+	static final class Element {
+
+		final int opcode;
+		final Class<?> type;
+		final Predicate<AbstractInsnNode> predicate;
+		final String description;
+		String capture;
+		int min = 1;
+		int max = 1;
+
+		Element(int opcode, Class<?> type, Predicate<AbstractInsnNode> predicate, String description) {
+			this.opcode = opcode;
+			this.type = type;
+			this.predicate = predicate;
+			this.description = description;
+		}
+
+		boolean test(AbstractInsnNode insn) {
+			return (this.opcode < 0 || insn.getOpcode() == this.opcode)
+					&& (this.type == null || this.type.isInstance(insn))
+					&& (this.predicate == null || this.predicate.test(insn));
+		}
+
+		Element copy() {
+			Element copy = new Element(this.opcode, this.type, this.predicate, this.description);
+			copy.capture = this.capture;
+			copy.min = this.min;
+			copy.max = this.max;
+			return copy;
+		}
+
+		void appendTo(StringBuilder sb) {
+			sb.append(this.description);
+			if (this.min != 1 || this.max != 1) {
+				sb.append("{").append(this.min).append(",");
+				if (this.max >= 0) {
+					sb.append(this.max);
+				}
+				sb.append("}");
+			}
+			if (this.capture != null) {
+				sb.append(" as ").append(this.capture);
+			}
+		}
+
+	}
+
+}
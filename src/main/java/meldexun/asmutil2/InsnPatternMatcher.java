@@ -0,0 +1,418 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+
+/**
+ * Matches multiple {@link InsnPattern}s in a single pass over an
+ * {@link InsnList} by simulating them as one automaton (Pike VM). Matches of
+ * each pattern are leftmost, greedy and don't overlap. Immutable.
+ */
+public final class InsnPatternMatcher {
+
+	private static final int TEST = 0;
+	private static final int SPLIT = 1;
+	private static final int JMP = 2;
+	private static final int MATCH = 3;
+
+	private final InsnPattern[] patterns;
+	private final int[] entries;
+	private final int[] ops;
+	private final int[] args1;
+	private final int[] args2;
+	private final int[] patternIndices;
+	private final InsnPattern.Element[] elements;
+	private final int[] elementIndices;
+
+	private InsnPatternMatcher(InsnPattern[] patterns, Program program) {
+		this.patterns = patterns;
+		this.entries = program.entries;
+		this.ops = Arrays.copyOf(program.ops, program.size);
+		this.args1 = Arrays.copyOf(program.args1, program.size);
+		this.args2 = Arrays.copyOf(program.args2, program.size);
+		this.patternIndices = Arrays.copyOf(program.patternIndices, program.size);
+		this.elements = Arrays.copyOf(program.elements, program.size);
+		this.elementIndices = Arrays.copyOf(program.elementIndices, program.size);
+	}
+
+	public static InsnPatternMatcher compile(InsnPattern... patterns) {
+		if (patterns.length == 0) {
+			throw new IllegalArgumentException("No patterns");
+		}
+		Program program = new Program(patterns.length);
+		for (int p = 0; p < patterns.length; p++) {
+			program.entries[p] = program.size;
+			List<InsnPattern.Element> elements = patterns[p].elements();
+			for (int e = 0; e < elements.size(); e++) {
+				program.compile(p, e, elements.get(e));
+			}
+			program.emit(MATCH, 0, 0, p, null, -1);
+		}
+		return new InsnPatternMatcher(patterns.clone(), program);
+	}
+
+	public List<Match> findAll(InsnList instructions) {
+		List<Match> matches = new ArrayList<>();
+		this.match(instructions, matches::add);
+		return matches;
+	}
+
+	/**
+	 * Passes every match to the action in the order in which the matches are
+	 * decided. The instruction list must not be modified by the action.
+	 */
+	public void match(InsnList instructions, Consumer<Match> action) {
+		new Execution(action).run(instructions);
+	}
+
+	private final class Execution {
+
+		private final Consumer<Match> action;
+		private ThreadList current = new ThreadList(ops.length);
+		private ThreadList next = new ThreadList(ops.length);
+		private final Path[] pending = new Path[patterns.length];
+		private final boolean[] cut = new boolean[patterns.length];
+		private final int[] alive = new int[patterns.length];
+		private int generation;
+
+		Execution(Consumer<Match> action) {
+			this.action = action;
+		}
+
+		void run(InsnList instructions) {
+			this.current.reset(++this.generation);
+			for (AbstractInsnNode insn = instructions.getFirst(); insn != null; insn = insn.getNext()) {
+				if (insn.getOpcode() < 0) {
+					continue;
+				}
+				Arrays.fill(this.cut, false);
+				for (int p = 0; p < patterns.length; p++) {
+					if (this.pending[p] == null) {
+						this.add(this.current, entries[p], null);
+					}
+				}
+				this.next.reset(++this.generation);
+				Arrays.fill(this.alive, 0);
+				this.step(this.current, this.next, insn);
+				ThreadList tmp = this.current;
+				this.current = this.next;
+				this.next = tmp;
+
+				for (int p = 0; p < patterns.length; p++) {
+					if (this.pending[p] != null && this.alive[p] == 0) {
+						AbstractInsnNode end = this.emit(p);
+						if (end != insn) {
+							this.replay(p, end.getNext(), insn, this.current);
+						}
+					}
+				}
+			}
+			AbstractInsnNode last = instructions.getLast();
+			for (int p = 0; p < patterns.length; p++) {
+				while (this.pending[p] != null) {
+					AbstractInsnNode end = this.emit(p);
+					if (end != last) {
+						this.replay(p, end.getNext(), last, null);
+					}
+				}
+			}
+		}
+
+		private void step(ThreadList from, ThreadList to, AbstractInsnNode insn) {
+			for (int i = 0; i < from.size; i++) {
+				int pc = from.pcs[i];
+				if (!this.cut[patternIndices[pc]] && elements[pc].test(insn)) {
+					this.add(to, pc + 1, new Path(insn, elementIndices[pc], from.paths[i]));
+				}
+			}
+		}
+
+		/**
+		 * Searches the pattern again from the instruction after a match which was
+		 * decided later than at its last instruction, e.g. because of a trailing
+		 * greedy repetition. The threads which are still alive after the last
+		 * instruction are added to the target list.
+		 */
+		private void replay(int p, AbstractInsnNode first, AbstractInsnNode last, ThreadList target) {
+			ThreadList threads = new ThreadList(ops.length);
+			ThreadList nextThreads = new ThreadList(ops.length);
+			threads.reset(++this.generation);
+			for (AbstractInsnNode insn = first; insn != null; insn = insn.getNext()) {
+				if (insn.getOpcode() >= 0) {
+					this.cut[p] = false;
+					if (this.pending[p] == null) {
+						this.add(threads, entries[p], null);
+					}
+					nextThreads.reset(++this.generation);
+					this.alive[p] = 0;
+					this.step(threads, nextThreads, insn);
+					ThreadList tmp = threads;
+					threads = nextThreads;
+					nextThreads = tmp;
+
+					if (this.pending[p] != null && this.alive[p] == 0) {
+						AbstractInsnNode end = this.emit(p);
+						if (end != insn) {
+							threads.reset(++this.generation);
+							insn = end;
+						}
+					}
+				}
+				if (insn == last) {
+					break;
+				}
+			}
+			if (target != null) {
+				for (int i = 0; i < threads.size; i++) {
+					int pc = threads.pcs[i];
+					target.marks[pc] = target.generation;
+					target.pcs[target.size] = pc;
+					target.paths[target.size] = threads.paths[i];
+					target.size++;
+				}
+			}
+		}
+
+		private void add(ThreadList list, int pc, Path path) {
+			if (list.marks[pc] == list.generation) {
+				return;
+			}
+			list.marks[pc] = list.generation;
+			switch (ops[pc]) {
+			case JMP:
+				this.add(list, args1[pc], path);
+				break;
+			case SPLIT:
+				this.add(list, args1[pc], path);
+				this.add(list, args2[pc], path);
+				break;
+			case MATCH: {
+				int p = patternIndices[pc];
+				if (!this.cut[p]) {
+					this.pending[p] = path;
+					this.cut[p] = true;
+				}
+				break;
+			}
+			default: {
+				int p = patternIndices[pc];
+				if (!this.cut[p]) {
+					list.pcs[list.size] = pc;
+					list.paths[list.size] = path;
+					list.size++;
+					this.alive[p]++;
+				}
+				break;
+			}
+			}
+		}
+
+		/**
+		 * @return the last instruction of the match
+		 */
+		private AbstractInsnNode emit(int p) {
+			Path path = this.pending[p];
+			this.pending[p] = null;
+			int length = 0;
+			for (Path node = path; node != null; node = node.prev) {
+				length++;
+			}
+			AbstractInsnNode[] insns = new AbstractInsnNode[length];
+			int[] elementIndices = new int[length];
+			for (Path node = path; node != null; node = node.prev) {
+				length--;
+				insns[length] = node.insn;
+				elementIndices[length] = node.element;
+			}
+			this.action.accept(new Match(patterns[p], p, insns, elementIndices));
+			return path.insn;
+		}
+
+	}
+
+	private static final class ThreadList {
+
+		final int[] pcs;
+		final Path[] paths;
+		final int[] marks;
+		int size;
+		int generation;
+
+		ThreadList(int capacity) {
+			this.pcs = new int[capacity];
+			this.paths = new Path[capacity];
+			this.marks = new int[capacity];
+		}
+
+		void reset(int generation) {
+			Arrays.fill(this.paths, 0, this.size, null);
+			this.size = 0;
+			this.generation = generation;
+		}
+
+	}
+
+	/**
+	 * The instructions consumed by a thread, linked from the last to the first.
+	 * Threads which split share their common prefix.
+	 */
+	private static final class Path {
+
+		final AbstractInsnNode insn;
+		final int element;
+		final Path prev;
+
+		Path(AbstractInsnNode insn, int element, Path prev) {
+			this.insn = insn;
+			this.element = element;
+			this.prev = prev;
+		}
+
+	}
+
+	private static final class Program {
+
+		final int[] entries;
+		int[] ops = new int[16];
+		int[] args1 = new int[16];
+		int[] args2 = new int[16];
+		int[] patternIndices = new int[16];
+		InsnPattern.Element[] elements = new InsnPattern.Element[16];
+		int[] elementIndices = new int[16];
+		int size;
+
+		Program(int patterns) {
+			this.entries = new int[patterns];
+		}
+
+		void compile(int pattern, int elementIndex, InsnPattern.Element element) {
+			for (int i = 0; i < element.min; i++) {
+				this.emit(TEST, 0, 0, pattern, element, elementIndex);
+			}
+			if (element.max < 0) {
+				// L: SPLIT L+1, end; TEST; JMP L
+				int split = this.emit(SPLIT, 0, 0, pattern, null, -1);
+				this.emit(TEST, 0, 0, pattern, element, elementIndex);
+				this.emit(JMP, split, 0, pattern, null, -1);
+				this.args1[split] = split + 1;
+				this.args2[split] = this.size;
+			} else {
+				// SPLIT next, end; TEST ... for every optional repetition
+				int[] splits = new int[element.max - element.min];
+				for (int i = 0; i < splits.length; i++) {
+					splits[i] = this.emit(SPLIT, 0, 0, pattern, null, -1);
+					this.emit(TEST, 0, 0, pattern, element, elementIndex);
+				}
+				for (int split : splits) {
+					this.args1[split] = split + 1;
+					this.args2[split] = this.size;
+				}
+			}
+		}
+
+		int emit(int op, int arg1, int arg2, int pattern, InsnPattern.Element element, int elementIndex) {
+			if (this.size == this.ops.length) {
+				int capacity = this.size * 2;
+				this.ops = Arrays.copyOf(this.ops, capacity);
+				this.args1 = Arrays.copyOf(this.args1, capacity);
+				this.args2 = Arrays.copyOf(this.args2, capacity);
+				this.patternIndices = Arrays.copyOf(this.patternIndices, capacity);
+				this.elements = Arrays.copyOf(this.elements, capacity);
+				this.elementIndices = Arrays.copyOf(this.elementIndices, capacity);
+			}
+			int pc = this.size++;
+			this.ops[pc] = op;
+			this.args1[pc] = arg1;
+			this.args2[pc] = arg2;
+			this.patternIndices[pc] = pattern;
+			this.elements[pc] = element;
+			this.elementIndices[pc] = elementIndex;
+			return pc;
+		}
+
+	}
+
+	public static final class Match {
+
+		private final InsnPattern pattern;
+		private final int patternIndex;
+		private final AbstractInsnNode[] insns;
+		private final int[] elementIndices;
+
+		Match(InsnPattern pattern, int patternIndex, AbstractInsnNode[] insns, int[] elementIndices) {
+			this.pattern = pattern;
+			this.patternIndex = patternIndex;
+			this.insns = insns;
+			this.elementIndices = elementIndices;
+		}
+
+		public InsnPattern pattern() {
+			return this.pattern;
+		}
+
+		/**
+		 * @return the index of the pattern in {@link InsnPatternMatcher#compile}
+		 */
+		public int patternIndex() {
+			return this.patternIndex;
+		}
+
+		/**
+		 * @return the matched instructions without skipped labels, line numbers and
+		 *         frames
+		 */
+		public List<AbstractInsnNode> insns() {
+			return Collections.unmodifiableList(Arrays.asList(this.insns));
+		}
+
+		public AbstractInsnNode first() {
+			return this.insns[0];
+		}
+
+		public AbstractInsnNode last() {
+			return this.insns[this.insns.length - 1];
+		}
+
+		/**
+		 * @return the last instruction captured with the name or {@code null} if no
+		 *         instruction was captured
+		 */
+		@SuppressWarnings("unchecked")
+		public <T extends AbstractInsnNode> T get(String name) {
+			for (int i = this.insns.length - 1; i >= 0; i--) {
+				if (name.equals(this.pattern.elements().get(this.elementIndices[i]).capture)) {
+					return (T) this.insns[i];
+				}
+			}
+			return null;
+		}
+
+		public List<AbstractInsnNode> getAll(String name) {
+			List<AbstractInsnNode> captured = new ArrayList<>();
+			for (int i = 0; i < this.insns.length; i++) {
+				if (name.equals(this.pattern.elements().get(this.elementIndices[i]).capture)) {
+					captured.add(this.insns[i]);
+				}
+			}
+			return captured;
+		}
+
+		@Override
+		public String toString() {
+			return "Match[pattern=" + this.patternIndex + ", insns=" + this.insns.length + "]";
+		}
+
+	}
+
+}
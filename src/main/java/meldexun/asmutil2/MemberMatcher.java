@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * {@link SignatureMatcher} which reads owner, name and desc directly from the
+ * node without creating a {@link SignatureMatcher.Signature}. Which names are
+ * matched is selected once by {@code meldexun.asm.obfuscated}.
+ */
+abstract class MemberMatcher<T> implements SignatureMatcher<T> {
+
+	private static final String OBFUSCATED = System.getProperty("meldexun.asm.obfuscated");
+
+	private final String[] owners;
+	private final String[] names;
+	private final String[] descs;
+	private final String errorDetails;
+	private final ConstantPoolFilter constantPoolFilter;
+
+	/**
+	 * @param owner   {@code null} to match any owner
+	 * @param obfName {@code null} if the name is not obfuscated
+	 * @param desc    {@code null} to match any desc
+	 */
+	MemberMatcher(String owner, String obfOwner, String name, String obfName, String desc, String obfDesc) {
+		this.owners = resolve(owner, obfOwner);
+		this.names = resolve(name, obfName);
+		this.descs = resolve(desc, obfDesc);
+
+		StringBuilder sb = new StringBuilder();
+		appendErrorDetails(sb, "owner", owner, obfOwner);
+		appendErrorDetails(sb, "name", name, obfName);
+		appendErrorDetails(sb, "desc", desc, obfDesc);
+		this.errorDetails = sb.toString();
+
+		ConstantPoolFilter filter = ConstantPoolFilter.anyOf(this.names);
+		if (this.owners != null) {
+			filter = ConstantPoolFilter.anyOf(this.owners).and(filter);
+		}
+		if (this.descs != null) {
+			filter = filter.and(ConstantPoolFilter.anyOf(this.descs));
+		}
+		this.constantPoolFilter = filter;
+	}
+
+	private static String[] resolve(String value, String obfValue) {
+		if (value == null) {
+			return null;
+		}
+		if (obfValue == null || obfValue.equals(value)) {
+			return new String[] { value };
+		}
+		if (OBFUSCATED == null) {
+			return new String[] { obfValue, value };
+		}
+		return new String[] { Boolean.parseBoolean(OBFUSCATED) ? obfValue : value };
+	}
+
+	private static void appendErrorDetails(StringBuilder sb, String key, String value, String obfValue) {
+		if (value == null) {
+			return;
+		}
+		if (sb.length() > 0) {
+			sb.append(" ");
+		}
+		sb.append(key).append("=");
+		if (obfValue == null) {
+			sb.append(value);
+		} else {
+			sb.append("[").append(value).append(", ").append(obfValue).append("]");
+		}
+	}
+
+	final boolean matches(String owner, String name, String desc) {
+		return contains(this.names, name) && (this.descs == null || contains(this.descs, desc))
+				&& (this.owners == null || contains(this.owners, owner));
+	}
+
+	private static boolean contains(String[] values, String value) {
+		for (String s : values) {
+			if (s.equals(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void accept(StringBuilder sb) {
+		sb.append(this.errorDetails);
+	}
+
+	@Override
+	public ConstantPoolFilter constantPoolFilter() {
+		return this.constantPoolFilter;
+	}
+
+	static final class MethodMatcher extends MemberMatcher<MethodNode> {
+
+		MethodMatcher(String owner, String obfOwner, String name, String obfName, String desc, String obfDesc) {
+			super(owner, obfOwner, name, obfName, desc, obfDesc);
+		}
+
+		@Override
+		public boolean test(MethodNode method) {
+			return this.matches(null, method.name, method.desc);
+		}
+
+	}
+
+	static final class FieldMatcher extends MemberMatcher<FieldNode> {
+
+		FieldMatcher(String owner, String obfOwner, String name, String obfName, String desc, String obfDesc) {
+			super(owner, obfOwner, name, obfName, desc, obfDesc);
+		}
+
+		@Override
+		public boolean test(FieldNode field) {
+			return this.matches(null, field.name, field.desc);
+		}
+
+	}
+
+	static final class MethodInsnMatcher extends MemberMatcher<MethodInsnNode> {
+
+		MethodInsnMatcher(String owner, String obfOwner, String name, String obfName, String desc, String obfDesc) {
+			super(owner, obfOwner, name, obfName, desc, obfDesc);
+		}
+
+		@Override
+		public boolean test(MethodInsnNode methodInsn) {
+			return this.matches(methodInsn.owner, methodInsn.name, methodInsn.desc);
+		}
+
+	}
+
+	static final class FieldInsnMatcher extends MemberMatcher<FieldInsnNode> {
+
+		FieldInsnMatcher(String owner, String obfOwner, String name, String obfName, String desc, String obfDesc) {
+			super(owner, obfOwner, name, obfName, desc, obfDesc);
+		}
+
+		@Override
+		public boolean test(FieldInsnNode fieldInsn) {
+			return this.matches(fieldInsn.owner, fieldInsn.name, fieldInsn.desc);
+		}
+
+	}
+
+}
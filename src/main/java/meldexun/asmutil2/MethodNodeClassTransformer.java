@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.MethodNode;
+
+import meldexun.asmutil2.MethodNodeTransformer.MethodScopedTransformer;
+import meldexun.asmutil2.reader.ClassUtil;
+
+/**
+ * Like {@link ClassNodeClassTransformer} but when all transformers of a class
+ * were created by {@link MethodNodeTransformer} and match methods by
+ * {@link SignatureMatcher} only the matched methods are read into
+ * {@link MethodNode}s. All other parts of the class are passed straight from
+ * the {@link ClassReader} to a {@link ClassWriter} created from that reader, so
+ * untransformed methods are copied byte by byte. Frames and maximum stack and
+ * local sizes are only computed for transformed methods. Otherwise the whole
+ * class is read into a {@link org.objectweb.asm.tree.ClassNode}.
+ */
+public abstract class MethodNodeClassTransformer extends ClassVisitorClassTransformer<ClassVisitor> {
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Override
+	protected ITransformInfo<ClassVisitor> getTransformInfo(String name) {
+		List<ClassNodeTransformer> transformers = this.getClassNodeTransformers(name);
+		if (transformers == null || transformers.isEmpty()) {
+			return null;
+		}
+		List<MethodScopedTransformer> methodTransformers = new ArrayList<>(transformers.size());
+		for (ClassNodeTransformer transformer : transformers) {
+			if (!(transformer instanceof MethodScopedTransformer)
+					|| !((MethodScopedTransformer) transformer).matchesSignatureOnly()) {
+				return (ITransformInfo) ClassNodeClassTransformer.createTransformInfo(transformers,
+						this.getClassUtil());
+			}
+			methodTransformers.add((MethodScopedTransformer) transformer);
+		}
+		return new MethodTransformInfo(methodTransformers, this.getClassUtil());
+	}
+
+	@Override
+	protected String fingerprint(String name) {
+		List<ClassNodeTransformer> transformers = this.getClassNodeTransformers(name);
+		if (transformers == null || transformers.isEmpty()) {
+			return null;
+		}
+		return ClassNodeClassTransformer.fingerprint(transformers, this.getClassUtil());
+	}
+
+	protected abstract List<ClassNodeTransformer> getClassNodeTransformers(String className);
+
+	private static class MethodTransformInfo implements ITransformInfo<ClassVisitor> {
+
+		private final ClassUtil classUtil;
+		private List<MethodScopedTransformer> transformers;
+		private boolean transformed;
+
+		MethodTransformInfo(List<MethodScopedTransformer> transformers, ClassUtil classUtil) {
+			this.transformers = transformers;
+			this.classUtil = classUtil;
+		}
+
+		@Override
+		public boolean canTransform(ClassReader classReader) {
+			this.transformers = ClassNodeClassTransformer.applicableTransformers(this.transformers, classReader);
+			return !this.transformers.isEmpty();
+		}
+
+		@Override
+		public ClassVisitor visitor(Lazy<ClassWriter> classWriter) {
+			return new MethodTransformingClassVisitor(classWriter.get());
+		}
+
+		@Override
+		public boolean transform(ClassVisitor classVisitor, Lazy<ClassWriter> classWriter) {
+			// methods are transformed and written while the class is read
+			return this.transformed;
+		}
+
+		@Override
+		public int writeFlags() {
+			// computed per transformed method
+			return 0;
+		}
+
+		@Override
+		public int readFlags() {
+			return 0;
+		}
+
+		@Override
+		public boolean copyClassReader() {
+			// untransformed methods are passed straight to the class writer and can be copied as is
+			return true;
+		}
+
+		private class MethodTransformingClassVisitor extends ClassVisitor {
+
+			private final int[] matches = new int[MethodTransformInfo.this.transformers.size()];
+			private int version;
+			private int access;
+			private String className;
+			private String superName;
+
+			MethodTransformingClassVisitor(ClassVisitor classVisitor) {
+				super(Opcodes.ASM6, classVisitor);
+			}
+
+			@Override
+			public void visit(int version, int access, String name, String signature, String superName,
+					String[] interfaces) {
+				if (!ASMUtil.DISABLE_LOGGING) {
+					ASMUtil.LOGGER.info("Transforming class {}", name);
+				}
+				if (TransformMetrics.ENABLED) {
+					for (MethodScopedTransformer transformer : MethodTransformInfo.this.transformers) {
+						transformer.metrics().calls.increment();
+					}
+				}
+				this.version = version;
+				this.access = access;
+				this.className = name;
+				this.superName = superName;
+				super.visit(version, access, name, signature, superName, interfaces);
+			}
+
+			@Override
+			public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+					String[] exceptions) {
+				TransformingMethodNode method = new TransformingMethodNode(access, name, descriptor, signature,
+						exceptions);
+				List<MethodScopedTransformer> transformers = MethodTransformInfo.this.transformers;
+				for (int i = 0; i < transformers.size(); i++) {
+					MethodScopedTransformer transformer = transformers.get(i);
+					if (transformer.matches(method)) {
+						transformer.checkMaxMatches(++this.matches[i]);
+						if (method.transformers == null) {
+							method.transformers = new ArrayList<>(1);
+						}
+						method.transformers.add(transformer);
+					}
+				}
+				if (method.transformers == null) {
+					return super.visitMethod(access, name, descriptor, signature, exceptions);
+				}
+				return method;
+			}
+
+			@Override
+			public void visitEnd() {
+				List<MethodScopedTransformer> transformers = MethodTransformInfo.this.transformers;
+				for (int i = 0; i < transformers.size(); i++) {
+					transformers.get(i).checkMinMatches(this.matches[i]);
+				}
+				super.visitEnd();
+			}
+
+			private class TransformingMethodNode extends MethodNode {
+
+				private List<MethodScopedTransformer> transformers;
+
+				TransformingMethodNode(int access, String name, String descriptor, String signature,
+						String[] exceptions) {
+					super(Opcodes.ASM6, access, name, descriptor, signature, exceptions);
+				}
+
+				@Override
+				public void visitEnd() {
+					super.visitEnd();
+					MethodTransformingClassVisitor owner = MethodTransformingClassVisitor.this;
+					int writeFlags = 0;
+					for (MethodScopedTransformer transformer : this.transformers) {
+						if (transformer.transformMethod(owner.className, this)) {
+							MethodTransformInfo.this.transformed = true;
+							writeFlags |= transformer.writeFlags();
+						}
+					}
+					MethodNode method = this;
+					if ((writeFlags & FrameComputer.COMPUTE_FLAGS) != 0) {
+						method = FrameComputer.compute(owner.version, owner.access, owner.className, owner.superName,
+								this, writeFlags & FrameComputer.COMPUTE_FLAGS, MethodTransformInfo.this.classUtil);
+					}
+					// written immediately to keep the order of methods
+					method.accept(owner.cv);
+				}
+
+			}
+
+		}
+
+	}
+
+}
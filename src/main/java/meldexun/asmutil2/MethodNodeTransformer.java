@@ -9,6 +9,7 @@ import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
+import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.MethodNode;
 
 public class MethodNodeTransformer {
@@ -131,13 +132,17 @@ public class MethodNodeTransformer {
 
 		private final Predicate<MethodNode> methodMatcher;
 		private final Consumer<StringBuilder> errorDetailAppender;
+		private ConstantPoolFilter constantPoolFilter;
 		private int minMatches = 1;
 		private int maxMatches = 1;
 		private int writeFlags;
 		private int priority;
+		private int version = ClassNodeTransformer.UNVERSIONED;
+		private String name;
 
 		public Builder(SignatureMatcher<MethodNode> signatureMatcher) {
 			this(signatureMatcher, signatureMatcher);
+			this.constantPoolFilter = signatureMatcher.constantPoolFilter();
 		}
 
 		public Builder(Predicate<MethodNode> methodMatcher, Consumer<StringBuilder> errorDetailAppender) {
@@ -165,60 +170,214 @@ public class MethodNodeTransformer {
 			return this;
 		}
 
+		/**
+		 * Sets a filter which rejects classes that can't contain a matching method.
+		 * Only used when no matching method is required, see
+		 * {@link #minMatches(int)}.
+		 */
+		public Builder constantPoolFilter(ConstantPoolFilter constantPoolFilter) {
+			this.constantPoolFilter = constantPoolFilter;
+			return this;
+		}
+
+		public Builder version(int version) {
+			this.version = version;
+			return this;
+		}
+
+		/**
+		 * Sets the name identifying the transformer in the {@link TransformMetrics}.
+		 * Defaults to the class of the transformer and the error details.
+		 */
+		public Builder name(String name) {
+			this.name = name;
+			return this;
+		}
+
 		public ClassNodeTransformer build(Consumer<MethodNode> transformer) {
-			return this.build(method -> {
+			return this.build(transformer.getClass(), method -> {
 				transformer.accept(method);
 				return true;
 			});
 		}
 
 		public ClassNodeTransformer build(Predicate<MethodNode> transformer) {
-			Objects.requireNonNull(transformer);
-			Predicate<MethodNode> methodMatcher = this.methodMatcher;
-			Consumer<StringBuilder> errorDetailAppender = this.errorDetailAppender;
-			int minMatches = this.minMatches;
-			int maxMatches = this.maxMatches;
-			int writeFlags = this.writeFlags;
-			int priority = this.priority;
-
-			return ClassNodeTransformer.create(writeFlags, priority, classNode -> {
-				boolean transformed = false;
-				int matches = 0;
-				for (MethodNode method : classNode.methods) {
-					if (methodMatcher.test(method)) {
-						matches++;
-						if (maxMatches > 0 && matches > maxMatches) {
-							StringBuilder sb = new StringBuilder();
-							sb.append("Found more method transform targets than expected!");
-							sb.append(" ").append("minMatches=").append(minMatches);
-							sb.append(" ").append("maxMatches=").append(maxMatches);
-							if (errorDetailAppender != null) {
-								sb.append(" ");
-								errorDetailAppender.accept(sb);
-							}
-							throw new ClassTransformException(sb.toString());
-						}
-						if (!ASMUtil.DISABLE_LOGGING) {
-							ASMUtil.LOGGER.info("Transforming method {}.{}{}", classNode.name, method.name,
-									method.desc);
+			return this.build(transformer.getClass(), transformer);
+		}
+
+		private ClassNodeTransformer build(Class<?> transformerClass, Predicate<MethodNode> transformer) {
+			// when a match is required the transformer has to run in order to report missing methods
+			return new MethodScopedTransformer(this.methodMatcher, this.errorDetailAppender,
+					this.minMatches <= 0 ? this.constantPoolFilter : null, this.minMatches, this.maxMatches,
+					this.writeFlags, this.priority, this.version, this.name, transformerClass.getName(),
+					Objects.requireNonNull(transformer));
+		}
+
+	}
+
+	/**
+	 * A transformer which only changes the methods matched by its method matcher.
+	 */
+	static final class MethodScopedTransformer implements ClassNodeTransformer {
+
+		private final Predicate<MethodNode> methodMatcher;
+		private final Consumer<StringBuilder> errorDetailAppender;
+		private final ConstantPoolFilter constantPoolFilter;
+		private final int minMatches;
+		private final int maxMatches;
+		private final int writeFlags;
+		private final int priority;
+		private final int version;
+		private String name;
+		private final String transformerClassName;
+		private final Predicate<MethodNode> transformer;
+
+		private MethodScopedTransformer(Predicate<MethodNode> methodMatcher,
+				Consumer<StringBuilder> errorDetailAppender, ConstantPoolFilter constantPoolFilter, int minMatches,
+				int maxMatches, int writeFlags, int priority, int version, String name, String transformerClassName,
+				Predicate<MethodNode> transformer) {
+			this.methodMatcher = methodMatcher;
+			this.errorDetailAppender = errorDetailAppender;
+			this.constantPoolFilter = constantPoolFilter;
+			this.minMatches = minMatches;
+			this.maxMatches = maxMatches;
+			this.writeFlags = writeFlags;
+			this.priority = priority;
+			this.version = version;
+			this.name = name;
+			this.transformerClassName = transformerClassName;
+			this.transformer = transformer;
+		}
+
+		@Override
+		public boolean transform(ClassNode classNode) {
+			return this.transform(classNode, null);
+		}
+
+		/**
+		 * @param transformedMethods receives every method that was transformed, may
+		 *                           be {@code null}
+		 */
+		boolean transform(ClassNode classNode, Consumer<MethodNode> transformedMethods) {
+			if (!ASMUtil.DISABLE_LOGGING) {
+				ASMUtil.LOGGER.info("Transforming class {}", classNode.name);
+			}
+			if (TransformMetrics.ENABLED) {
+				this.metrics().calls.increment();
+			}
+			boolean transformed = false;
+			int matches = 0;
+			for (MethodNode method : classNode.methods) {
+				if (this.matches(method)) {
+					this.checkMaxMatches(++matches);
+					if (this.transformMethod(classNode.name, method)) {
+						transformed = true;
+						if (transformedMethods != null) {
+							transformedMethods.accept(method);
 						}
-						transformed |= transformer.test(method);
 					}
 				}
-				if (matches < minMatches) {
-					StringBuilder sb = new StringBuilder();
-					sb.append("Found less method transform targets than expected!");
-					sb.append(" ").append("minMatches").append(minMatches);
-					sb.append(" ").append("maxMatches=").append(maxMatches);
-					sb.append(" ").append("matches=").append(matches);
-					if (errorDetailAppender != null) {
-						sb.append(" ");
-						errorDetailAppender.accept(sb);
-					}
-					throw new ClassTransformException(sb.toString());
+			}
+			this.checkMinMatches(matches);
+			return transformed;
+		}
+
+		/**
+		 * @return {@code true} if the matcher of this transformer only inspects the
+		 *         name and descriptor of methods and thus can be tested before the
+		 *         method body is read
+		 */
+		boolean matchesSignatureOnly() {
+			return this.methodMatcher instanceof SignatureMatcher;
+		}
+
+		boolean matches(MethodNode method) {
+			return this.methodMatcher.test(method);
+		}
+
+		boolean transformMethod(String className, MethodNode method) {
+			if (!ASMUtil.DISABLE_LOGGING) {
+				ASMUtil.LOGGER.info("Transforming method {}.{}{}", className, method.name, method.desc);
+			}
+			if (!TransformMetrics.ENABLED) {
+				return this.transformer.test(method);
+			}
+			TransformMetrics.Counters metrics = this.metrics();
+			long start = System.nanoTime();
+			boolean transformed = this.transformer.test(method);
+			metrics.transformNanos.add(System.nanoTime() - start);
+			metrics.matches.increment();
+			if (transformed) {
+				metrics.writeFlags.accumulate(this.writeFlags);
+			}
+			return transformed;
+		}
+
+		TransformMetrics.Counters metrics() {
+			// not cached, counters are replaced when the metrics are reset
+			return TransformMetrics.forTransformer(this.name());
+		}
+
+		void checkMaxMatches(int matches) {
+			if (this.maxMatches > 0 && matches > this.maxMatches) {
+				StringBuilder sb = new StringBuilder();
+				sb.append("Found more method transform targets than expected!");
+				sb.append(" ").append("minMatches=").append(this.minMatches);
+				sb.append(" ").append("maxMatches=").append(this.maxMatches);
+				if (this.errorDetailAppender != null) {
+					sb.append(" ");
+					this.errorDetailAppender.accept(sb);
 				}
-				return transformed;
-			});
+				throw new ClassTransformException(sb.toString());
+			}
+		}
+
+		void checkMinMatches(int matches) {
+			if (matches < this.minMatches) {
+				StringBuilder sb = new StringBuilder();
+				sb.append("Found less method transform targets than expected!");
+				sb.append(" ").append("minMatches").append(this.minMatches);
+				sb.append(" ").append("maxMatches=").append(this.maxMatches);
+				sb.append(" ").append("matches=").append(matches);
+				if (this.errorDetailAppender != null) {
+					sb.append(" ");
+					this.errorDetailAppender.accept(sb);
+				}
+				throw new ClassTransformException(sb.toString());
+			}
+		}
+
+		@Override
+		public int writeFlags() {
+			return this.writeFlags;
+		}
+
+		@Override
+		public int priority() {
+			return this.priority;
+		}
+
+		@Override
+		public int version() {
+			return this.version;
+		}
+
+		@Override
+		public ConstantPoolFilter constantPoolFilter() {
+			return this.constantPoolFilter;
+		}
+
+		@Override
+		public String name() {
+			String name = this.name;
+			if (name == null) {
+				StringBuilder sb = new StringBuilder(this.transformerClassName);
+				sb.append(" ");
+				this.errorDetailAppender.accept(sb);
+				name = sb.toString();
+				this.name = name;
+			}
+			return name;
 		}
 
 	}
@@ -5,10 +5,9 @@
 
 package meldexun.asmutil2;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Objects;
 
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 
 import meldexun.asmutil2.reader.ClassUtil;
@@ -26,24 +25,24 @@ public class NonLoadingClassWriter extends ClassWriter {
 		this.classUtil = Objects.requireNonNull(classUtil);
 	}
 
+	/**
+	 * @see ClassWriter#ClassWriter(ClassReader, int)
+	 */
+	public NonLoadingClassWriter(ClassReader classReader, int flags) {
+		this(classReader, flags, ClassUtil.DEFAULT);
+	}
+
+	/**
+	 * @see ClassWriter#ClassWriter(ClassReader, int)
+	 */
+	public NonLoadingClassWriter(ClassReader classReader, int flags, ClassUtil classUtil) {
+		super(classReader, flags);
+		this.classUtil = Objects.requireNonNull(classUtil);
+	}
+
 	@Override
 	protected String getCommonSuperClass(String type1, String type2) {
-		List<String> classHierarchyType1 = new ArrayList<>();
-		String result = this.classUtil.findInClassHierarchy(type1, type -> {
-			if (type.equals(type2)) {
-				return true;
-			}
-			classHierarchyType1.add(type);
-			return false;
-		});
-		if (result != null) {
-			return result;
-		}
-		result = this.classUtil.findInClassHierarchy(type2, classHierarchyType1::contains);
-		if (result != null) {
-			return result;
-		}
-		throw new IllegalStateException();
+		return this.classUtil.getCommonSuperClass(type1, type2);
 	}
 
 }
@@ -63,144 +63,152 @@ public interface SignatureMatcher<T> extends Predicate<T>, Consumer<StringBuilde
 
 	void accept(StringBuilder sb);
 
+	/**
+	 * @return a filter which rejects classes that can't contain a matching element
+	 *         or {@code null} if no such filter is known
+	 */
+	default ConstantPoolFilter constantPoolFilter() {
+		return null;
+	}
+
 	static SignatureMatcher<FieldNode> matchingFieldName(String name) {
-		return matchingName(Signature::of, name);
+		return new MemberMatcher.FieldMatcher(null, null, name, null, null, null);
 	}
 
 	static SignatureMatcher<FieldNode> matchingFieldNameDesc(String name, String desc) {
-		return matchingNameDesc(Signature::of, name, desc);
+		return new MemberMatcher.FieldMatcher(null, null, name, null, desc, null);
 	}
 
 	static SignatureMatcher<FieldNode> matchingFieldOwnerNameDesc(String owner, String name, String desc) {
-		return matchingOwnerNameDesc(Signature::of, owner, name, desc);
+		return new MemberMatcher.FieldMatcher(owner, null, name, null, desc, null);
 	}
 
 	static SignatureMatcher<FieldNode> matchingFieldNameObf(String name, String obfName) {
-		return matchingNameObf(Signature::of, name, obfName);
+		return new MemberMatcher.FieldMatcher(null, null, name, obfName, null, null);
 	}
 
 	static SignatureMatcher<FieldNode> matchingFieldNameDescObf(String name, String obfName, String desc) {
-		return matchingNameDescObf(Signature::of, name, obfName, desc);
+		return new MemberMatcher.FieldMatcher(null, null, name, obfName, desc, null);
 	}
 
 	static SignatureMatcher<FieldNode> matchingFieldNameDescObf(String name, String obfName, String desc,
 			String obfDesc) {
-		return matchingNameDescObf(Signature::of, name, obfName, desc, obfDesc);
+		return new MemberMatcher.FieldMatcher(null, null, name, obfName, desc, obfDesc);
 	}
 
 	static SignatureMatcher<FieldNode> matchingFieldOwnerNameDescObf(String owner, String name, String obfName,
 			String desc) {
-		return matchingOwnerNameDescObf(Signature::of, owner, name, obfName, desc);
+		return new MemberMatcher.FieldMatcher(owner, null, name, obfName, desc, null);
 	}
 
 	static SignatureMatcher<FieldNode> matchingFieldOwnerNameDescObf(String owner, String obfOwner, String name,
 			String obfName, String desc, String obfDesc) {
-		return matchingOwnerNameDescObf(Signature::of, owner, obfOwner, name, obfName, desc, obfDesc);
+		return new MemberMatcher.FieldMatcher(owner, obfOwner, name, obfName, desc, obfDesc);
 	}
 
 	static SignatureMatcher<MethodNode> matchingMethodName(String name) {
-		return matchingName(Signature::of, name);
+		return new MemberMatcher.MethodMatcher(null, null, name, null, null, null);
 	}
 
 	static SignatureMatcher<MethodNode> matchingMethodNameDesc(String name, String desc) {
-		return matchingNameDesc(Signature::of, name, desc);
+		return new MemberMatcher.MethodMatcher(null, null, name, null, desc, null);
 	}
 
 	static SignatureMatcher<MethodNode> matchingMethodOwnerNameDesc(String owner, String name, String desc) {
-		return matchingOwnerNameDesc(Signature::of, owner, name, desc);
+		return new MemberMatcher.MethodMatcher(owner, null, name, null, desc, null);
 	}
 
 	static SignatureMatcher<MethodNode> matchingMethodNameObf(String name, String obfName) {
-		return matchingNameObf(Signature::of, name, obfName);
+		return new MemberMatcher.MethodMatcher(null, null, name, obfName, null, null);
 	}
 
 	static SignatureMatcher<MethodNode> matchingMethodNameDescObf(String name, String obfName, String desc) {
-		return matchingNameDescObf(Signature::of, name, obfName, desc);
+		return new MemberMatcher.MethodMatcher(null, null, name, obfName, desc, null);
 	}
 
 	static SignatureMatcher<MethodNode> matchingMethodNameDescObf(String name, String obfName, String desc,
 			String obfDesc) {
-		return matchingNameDescObf(Signature::of, name, obfName, desc, obfDesc);
+		return new MemberMatcher.MethodMatcher(null, null, name, obfName, desc, obfDesc);
 	}
 
 	static SignatureMatcher<MethodNode> matchingMethodOwnerNameDescObf(String owner, String name, String obfName,
 			String desc) {
-		return matchingOwnerNameDescObf(Signature::of, owner, name, obfName, desc);
+		return new MemberMatcher.MethodMatcher(owner, null, name, obfName, desc, null);
 	}
 
 	static SignatureMatcher<MethodNode> matchingMethodOwnerNameDescObf(String owner, String obfOwner, String name,
 			String obfName, String desc, String obfDesc) {
-		return matchingOwnerNameDescObf(Signature::of, owner, obfOwner, name, obfName, desc, obfDesc);
+		return new MemberMatcher.MethodMatcher(owner, obfOwner, name, obfName, desc, obfDesc);
 	}
 
 	static SignatureMatcher<FieldInsnNode> matchingFieldInsnName(String name) {
-		return matchingName(Signature::of, name);
+		return new MemberMatcher.FieldInsnMatcher(null, null, name, null, null, null);
 	}
 
 	static SignatureMatcher<FieldInsnNode> matchingFieldInsnNameDesc(String name, String desc) {
-		return matchingNameDesc(Signature::of, name, desc);
+		return new MemberMatcher.FieldInsnMatcher(null, null, name, null, desc, null);
 	}
 
 	static SignatureMatcher<FieldInsnNode> matchingFieldInsnOwnerNameDesc(String owner, String name, String desc) {
-		return matchingOwnerNameDesc(Signature::of, owner, name, desc);
+		return new MemberMatcher.FieldInsnMatcher(owner, null, name, null, desc, null);
 	}
 
 	static SignatureMatcher<FieldInsnNode> matchingFieldInsnNameObf(String name, String obfName) {
-		return matchingNameObf(Signature::of, name, obfName);
+		return new MemberMatcher.FieldInsnMatcher(null, null, name, obfName, null, null);
 	}
 
 	static SignatureMatcher<FieldInsnNode> matchingFieldInsnNameDescObf(String name, String obfName, String desc) {
-		return matchingNameDescObf(Signature::of, name, obfName, desc);
+		return new MemberMatcher.FieldInsnMatcher(null, null, name, obfName, desc, null);
 	}
 
 	static SignatureMatcher<FieldInsnNode> matchingFieldInsnNameDescObf(String name, String obfName, String desc,
 			String obfDesc) {
-		return matchingNameDescObf(Signature::of, name, obfName, desc, obfDesc);
+		return new MemberMatcher.FieldInsnMatcher(null, null, name, obfName, desc, obfDesc);
 	}
 
 	static SignatureMatcher<FieldInsnNode> matchingFieldInsnOwnerNameDescObf(String owner, String name, String obfName,
 			String desc) {
-		return matchingOwnerNameDescObf(Signature::of, owner, name, obfName, desc);
+		return new MemberMatcher.FieldInsnMatcher(owner, null, name, obfName, desc, null);
 	}
 
 	static SignatureMatcher<FieldInsnNode> matchingFieldInsnOwnerNameDescObf(String owner, String obfOwner, String name,
 			String obfName, String desc, String obfDesc) {
-		return matchingOwnerNameDescObf(Signature::of, owner, obfOwner, name, obfName, desc, obfDesc);
+		return new MemberMatcher.FieldInsnMatcher(owner, obfOwner, name, obfName, desc, obfDesc);
 	}
 
 	static SignatureMatcher<MethodInsnNode> matchingMethodInsnName(String name) {
-		return matchingName(Signature::of, name);
+		return new MemberMatcher.MethodInsnMatcher(null, null, name, null, null, null);
 	}
 
 	static SignatureMatcher<MethodInsnNode> matchingMethodInsnNameDesc(String name, String desc) {
-		return matchingNameDesc(Signature::of, name, desc);
+		return new MemberMatcher.MethodInsnMatcher(null, null, name, null, desc, null);
 	}
 
 	static SignatureMatcher<MethodInsnNode> matchingMethodInsnOwnerNameDesc(String owner, String name, String desc) {
-		return matchingOwnerNameDesc(Signature::of, owner, name, desc);
+		return new MemberMatcher.MethodInsnMatcher(owner, null, name, null, desc, null);
 	}
 
 	static SignatureMatcher<MethodInsnNode> matchingMethodInsnNameObf(String name, String obfName) {
-		return matchingNameObf(Signature::of, name, obfName);
+		return new MemberMatcher.MethodInsnMatcher(null, null, name, obfName, null, null);
 	}
 
 	static SignatureMatcher<MethodInsnNode> matchingMethodInsnNameDescObf(String name, String obfName, String desc) {
-		return matchingNameDescObf(Signature::of, name, obfName, desc);
+		return new MemberMatcher.MethodInsnMatcher(null, null, name, obfName, desc, null);
 	}
 
 	static SignatureMatcher<MethodInsnNode> matchingMethodInsnNameDescObf(String name, String obfName, String desc,
 			String obfDesc) {
-		return matchingNameDescObf(Signature::of, name, obfName, desc, obfDesc);
+		return new MemberMatcher.MethodInsnMatcher(null, null, name, obfName, desc, obfDesc);
 	}
 
 	static SignatureMatcher<MethodInsnNode> matchingMethodInsnOwnerNameDescObf(String owner, String name,
 			String obfName, String desc) {
-		return matchingOwnerNameDescObf(Signature::of, owner, name, obfName, desc);
+		return new MemberMatcher.MethodInsnMatcher(owner, null, name, obfName, desc, null);
 	}
 
 	static SignatureMatcher<MethodInsnNode> matchingMethodInsnOwnerNameDescObf(String owner, String obfOwner,
 			String name, String obfName, String desc, String obfDesc) {
-		return matchingOwnerNameDescObf(Signature::of, owner, obfOwner, name, obfName, desc, obfDesc);
+		return new MemberMatcher.MethodInsnMatcher(owner, obfOwner, name, obfName, desc, obfDesc);
 	}
 
 	static <T> SignatureMatcher<T> matchingName(Function<T, Signature> wrapper, String name) {
@@ -208,7 +216,7 @@ public interface SignatureMatcher<T> extends Predicate<T>, Consumer<StringBuilde
 			return name.equals(signature.name());
 		}, sb -> {
 			sb.append("name=").append(name);
-		});
+		}, ConstantPoolFilter.anyOf(name));
 	}
 
 	static <T> SignatureMatcher<T> matchingNameDesc(Function<T, Signature> wrapper, String name, String desc) {
@@ -218,7 +226,7 @@ public interface SignatureMatcher<T> extends Predicate<T>, Consumer<StringBuilde
 			sb.append("name=").append(name);
 			sb.append(" ");
 			sb.append("desc=").append(desc);
-		});
+		}, ConstantPoolFilter.anyOf(name).and(ConstantPoolFilter.anyOf(desc)));
 	}
 
 	static <T> SignatureMatcher<T> matchingOwnerNameDesc(Function<T, Signature> wrapper, String owner, String name,
@@ -231,7 +239,7 @@ public interface SignatureMatcher<T> extends Predicate<T>, Consumer<StringBuilde
 			sb.append("name=").append(name);
 			sb.append(" ");
 			sb.append("desc=").append(desc);
-		});
+		}, ConstantPoolFilter.anyOf(owner).and(ConstantPoolFilter.anyOf(name)).and(ConstantPoolFilter.anyOf(desc)));
 	}
 
 	static <T> SignatureMatcher<T> matchingNameObf(Function<T, Signature> wrapper, String name, String obfName) {
@@ -239,7 +247,7 @@ public interface SignatureMatcher<T> extends Predicate<T>, Consumer<StringBuilde
 			return (obfName.equals(signature.name()) || name.equals(signature.name()));
 		}, sb -> {
 			sb.append("name=[").append(name).append(", ").append(obfName).append("]");
-		});
+		}, ConstantPoolFilter.anyOf(name, obfName));
 	}
 
 	static <T> SignatureMatcher<T> matchingNameDescObf(Function<T, Signature> wrapper, String name, String obfName,
@@ -250,7 +258,7 @@ public interface SignatureMatcher<T> extends Predicate<T>, Consumer<StringBuilde
 			sb.append("name=[").append(name).append(", ").append(obfName).append("]");
 			sb.append(" ");
 			sb.append("desc=").append(desc);
-		});
+		}, ConstantPoolFilter.anyOf(name, obfName).and(ConstantPoolFilter.anyOf(desc)));
 	}
 
 	static <T> SignatureMatcher<T> matchingNameDescObf(Function<T, Signature> wrapper, String name, String obfName,
@@ -262,7 +270,7 @@ public interface SignatureMatcher<T> extends Predicate<T>, Consumer<StringBuilde
 			sb.append("name=[").append(name).append(", ").append(obfName).append("]");
 			sb.append(" ");
 			sb.append("desc=[").append(desc).append(", ").append(obfDesc).append("]");
-		});
+		}, ConstantPoolFilter.anyOf(name, obfName).and(ConstantPoolFilter.anyOf(desc, obfDesc)));
 	}
 
 	static <T> SignatureMatcher<T> matchingOwnerNameDescObf(Function<T, Signature> wrapper, String owner, String name,
@@ -277,7 +285,7 @@ public interface SignatureMatcher<T> extends Predicate<T>, Consumer<StringBuilde
 			sb.append("name=[").append(name).append(", ").append(obfName).append("]");
 			sb.append(" ");
 			sb.append("desc=").append(desc);
-		});
+		}, ConstantPoolFilter.anyOf(owner).and(ConstantPoolFilter.anyOf(name, obfName)).and(ConstantPoolFilter.anyOf(desc)));
 	}
 
 	static <T> SignatureMatcher<T> matchingOwnerNameDescObf(Function<T, Signature> wrapper, String owner,
@@ -292,11 +300,17 @@ public interface SignatureMatcher<T> extends Predicate<T>, Consumer<StringBuilde
 			sb.append("name=[").append(name).append(", ").append(obfName).append("]");
 			sb.append(" ");
 			sb.append("desc=[").append(desc).append(", ").append(obfDesc).append("]");
-		});
+		}, ConstantPoolFilter.anyOf(owner, obfOwner).and(ConstantPoolFilter.anyOf(name, obfName))
+				.and(ConstantPoolFilter.anyOf(desc, obfDesc)));
 	}
 
 	static <T> SignatureMatcher<T> create(Function<T, Signature> wrapper, Predicate<Signature> predicate,
 			Consumer<StringBuilder> errorDetailAppender) {
+		return create(wrapper, predicate, errorDetailAppender, null);
+	}
+
+	static <T> SignatureMatcher<T> create(Function<T, Signature> wrapper, Predicate<Signature> predicate,
+			Consumer<StringBuilder> errorDetailAppender, ConstantPoolFilter constantPoolFilter) {
 		return new SignatureMatcher<T>() {
 			@Override
 			public boolean test(T t) {
@@ -307,6 +321,11 @@ public interface SignatureMatcher<T> extends Predicate<T>, Consumer<StringBuilde
 			public void accept(StringBuilder sb) {
 				errorDetailAppender.accept(sb);
 			}
+
+			@Override
+			public ConstantPoolFilter constantPoolFilter() {
+				return constantPoolFilter;
+			}
 		};
 	}
 
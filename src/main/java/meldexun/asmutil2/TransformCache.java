@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Persistent on-disk cache of transformed class bytes. Entries are keyed by a
+ * hash of the untransformed class bytes and the fingerprint of the transformers
+ * targeting the class. Entries are written to a temporary file first and then
+ * atomically moved into place, every entry carries a checksum and corrupted
+ * entries are discarded on read. When the cache grows beyond its maximum size
+ * the least recently used entries are evicted.
+ */
+public class TransformCache {
+
+	private static final Path DEFAULT_CACHE_DIR = Paths
+			.get(System.getProperty("meldexun.asm.cacheDir", ".meldexun/asm/cache"));
+	private static final long DEFAULT_MAX_SIZE = Long.getLong("meldexun.asm.cacheSize", 256L) << 20;
+	private static TransformCache defaultCache;
+	private static boolean defaultCacheInitialized;
+
+	static final byte[] UNCHANGED = new byte[0];
+	private static final int MAGIC = 0x4D415443;
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 4 + 4 + 1 + 4 + 4;
+	private static final byte FLAG_UNCHANGED = 0;
+	private static final byte FLAG_TRANSFORMED = 1;
+	private static final String ENTRY_SUFFIX = ".bin";
+	/**
+	 * Temporary files younger than this may still be written by another process
+	 * sharing the cache.
+	 */
+	private static final long STALE_TEMP_FILE_MILLIS = TimeUnit.MINUTES.toMillis(1L);
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final Path dir;
+	private final long maxSize;
+	private final AtomicLong size = new AtomicLong();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder writes = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder corruptions = new LongAdder();
+
+	public TransformCache(Path dir, long maxSize) throws IOException {
+		this.dir = dir;
+		this.maxSize = maxSize;
+		Files.createDirectories(dir);
+		this.size.set(this.scan(null));
+	}
+
+	/**
+	 * @return the cache configured via the {@code meldexun.asm.cache} system
+	 *         properties or {@code null} if caching is disabled
+	 */
+	public static synchronized TransformCache getDefault() {
+		if (!defaultCacheInitialized) {
+			defaultCacheInitialized = true;
+			if (ASMUtil.CACHE) {
+				try {
+					defaultCache = new TransformCache(DEFAULT_CACHE_DIR, DEFAULT_MAX_SIZE);
+				} catch (IOException e) {
+					ASMUtil.LOGGER.error("Failed initializing transform cache", e);
+				}
+			}
+		}
+		return defaultCache;
+	}
+
+	String key(String name, byte[] basicClass, String fingerprint) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		digest.update((byte) FORMAT_VERSION);
+		digest.update(name.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(basicClass);
+		byte[] hash = digest.digest();
+		char[] chars = new char[hash.length * 2];
+		for (int i = 0; i < hash.length; i++) {
+			chars[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+			chars[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xF];
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * @return {@code null} if there is no valid entry for the key,
+	 *         {@link #UNCHANGED} if the class was not transformed, otherwise the
+	 *         transformed class
+	 */
+	byte[] get(String key) {
+		Path file = this.file(key);
+		byte[] entry;
+		try {
+			entry = Files.readAllBytes(file);
+		} catch (NoSuchFileException e) {
+			this.misses.increment();
+			return null;
+		} catch (IOException e) {
+			ASMUtil.LOGGER.warn("Failed reading transform cache entry {}", file, e);
+			this.misses.increment();
+			return null;
+		}
+		byte[] data = decode(entry);
+		if (data == null) {
+			ASMUtil.LOGGER.warn("Discarding corrupted transform cache entry {}", file);
+			this.corruptions.increment();
+			this.misses.increment();
+			this.delete(file, entry.length);
+			return null;
+		}
+		try {
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			// ignore, only affects eviction order
+		}
+		this.hits.increment();
+		return data;
+	}
+
+	/**
+	 * @param transformedClass {@code null} if the class was not transformed
+	 */
+	void put(String key, byte[] transformedClass) {
+		Path file = this.file(key);
+		byte[] entry = encode(transformedClass);
+		try {
+			long previousSize = Files.exists(file) ? Files.size(file) : 0L;
+			FileUtil.writeAtomically(file, entry);
+			this.size.addAndGet(entry.length - previousSize);
+		} catch (IOException e) {
+			ASMUtil.LOGGER.warn("Failed writing transform cache entry {}", file, e);
+			return;
+		}
+		this.writes.increment();
+		if (this.size.get() > this.maxSize) {
+			this.evict();
+		}
+	}
+
+	private static byte[] encode(byte[] transformedClass) {
+		byte[] data = transformedClass != null ? transformedClass : UNCHANGED;
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + data.length);
+		buffer.putInt(MAGIC);
+		buffer.putInt(FORMAT_VERSION);
+		buffer.put(transformedClass != null ? FLAG_TRANSFORMED : FLAG_UNCHANGED);
+		buffer.putInt(data.length);
+		buffer.putInt(FileUtil.checksum(data, 0, data.length));
+		buffer.put(data);
+		return buffer.array();
+	}
+
+	private static byte[] decode(byte[] entry) {
+		if (entry.length < HEADER_SIZE) {
+			return null;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(entry);
+		if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+			return null;
+		}
+		byte flag = buffer.get();
+		int length = buffer.getInt();
+		int checksum = buffer.getInt();
+		if (length != buffer.remaining()) {
+			return null;
+		}
+		if (FileUtil.checksum(entry, HEADER_SIZE, length) != checksum) {
+			return null;
+		}
+		if (flag == FLAG_UNCHANGED) {
+			return length == 0 ? UNCHANGED : null;
+		}
+		if (flag != FLAG_TRANSFORMED) {
+			return null;
+		}
+		byte[] data = new byte[length];
+		buffer.get(data);
+		return data;
+	}
+
+	private synchronized void evict() {
+		if (this.size.get() <= this.maxSize) {
+			return;
+		}
+		List<Entry> entries = new ArrayList<>();
+		try {
+			this.size.set(this.scan(entries));
+		} catch (IOException e) {
+			ASMUtil.LOGGER.warn("Failed scanning transform cache {}", this.dir, e);
+			return;
+		}
+		// evict down to 3/4 of the maximum size so that eviction does not run on every write
+		long targetSize = this.maxSize - (this.maxSize >> 2);
+		entries.sort(Comparator.comparing(entry -> entry.lastModified));
+		for (Entry entry : entries) {
+			if (this.size.get() <= targetSize) {
+				break;
+			}
+			this.delete(entry.file, entry.size);
+			this.evictions.increment();
+		}
+	}
+
+	private long scan(List<Entry> entries) throws IOException {
+		long[] totalSize = new long[1];
+		long staleTempFileTime = System.currentTimeMillis() - STALE_TEMP_FILE_MILLIS;
+		Files.walkFileTree(this.dir, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				String fileName = file.getFileName().toString();
+				if (fileName.endsWith(ENTRY_SUFFIX)) {
+					totalSize[0] += attrs.size();
+					if (entries != null) {
+						entries.add(new Entry(file, attrs.size(), attrs.lastModifiedTime()));
+					}
+				} else if (fileName.endsWith(FileUtil.TEMP_SUFFIX) && entries == null
+						&& attrs.lastModifiedTime().toMillis() < staleTempFileTime) {
+					// left over by an interrupted write
+					Files.deleteIfExists(file);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return totalSize[0];
+	}
+
+	private void delete(Path file, long fileSize) {
+		try {
+			if (Files.deleteIfExists(file)) {
+				this.size.addAndGet(-fileSize);
+			}
+		} catch (IOException e) {
+			ASMUtil.LOGGER.warn("Failed deleting transform cache entry {}", file, e);
+		}
+	}
+
+	private Path file(String key) {
+		return this.dir.resolve(key.substring(0, 2)).resolve(key.substring(2) + ENTRY_SUFFIX);
+	}
+
+	public void clear() throws IOException {
+		synchronized (this) {
+			FileUtil.deleteDirectory(this.dir);
+			Files.createDirectories(this.dir);
+			this.size.set(0L);
+		}
+	}
+
+	public long size() {
+		return this.size.get();
+	}
+
+	public long maxSize() {
+		return this.maxSize;
+	}
+
+	public long hits() {
+		return this.hits.sum();
+	}
+
+	public long misses() {
+		return this.misses.sum();
+	}
+
+	public long writes() {
+		return this.writes.sum();
+	}
+
+	public long evictions() {
+		return this.evictions.sum();
+	}
+
+	public long corruptions() {
+		return this.corruptions.sum();
+	}
+
+	private static class Entry {
+
+		final Path file;
+		final long size;
+		final FileTime lastModified;
+
+		Entry(Path file, long size, FileTime lastModified) {
+			this.file = file;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+	}
+
+}
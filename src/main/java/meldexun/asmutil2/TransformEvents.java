@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+/**
+ * Emits profiling events for class transformations, e.g. Java Flight Recorder
+ * events. On Java 11 and newer the multi-release jar provides an
+ * implementation emitting JFR events, on older runtimes no events are emitted.
+ */
+public interface TransformEvents {
+
+	TransformEvents INSTANCE = load();
+
+	/**
+	 * @return a started event or {@code null} if events are disabled
+	 */
+	PhaseEvent beginPhase();
+
+	/**
+	 * @return a started event or {@code null} if events are disabled
+	 */
+	ResourceLoadEvent beginResourceLoad();
+
+	interface PhaseEvent {
+
+		/**
+		 * @param phase       {@code read}, {@code transform} or {@code write}
+		 * @param transformer the class name of the class transformer
+		 */
+		void end(String phase, String className, String transformer, int bytesIn, int bytesOut);
+
+	}
+
+	interface ResourceLoadEvent {
+
+		/**
+		 * @param location the jar or class file or {@code null} if unknown
+		 */
+		void end(String className, String location, int bytes);
+
+	}
+
+	static TransformEvents load() {
+		try {
+			// only packaged under META-INF/versions/11
+			return (TransformEvents) Class
+					.forName("meldexun.asmutil2.jfr.JfrTransformEvents", true, TransformEvents.class.getClassLoader())
+					.getConstructor()
+					.newInstance();
+		} catch (ClassNotFoundException e) {
+			// older runtime
+		} catch (ReflectiveOperationException | LinkageError e) {
+			ASMUtil.LOGGER.warn("Failed loading transform events", e);
+		}
+		return new TransformEvents() {
+
+			@Override
+			public PhaseEvent beginPhase() {
+				return null;
+			}
+
+			@Override
+			public ResourceLoadEvent beginResourceLoad() {
+				return null;
+			}
+
+		};
+	}
+
+}
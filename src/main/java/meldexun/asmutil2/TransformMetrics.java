@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+
+/**
+ * Collects per class and per transformer statistics when the
+ * {@code meldexun.asm.metrics} system property is set. Available from
+ * {@link #snapshot()} or over JMX as {@value #OBJECT_NAME}.
+ */
+public final class TransformMetrics {
+
+	public static final boolean ENABLED = ASMUtil.METRICS;
+	public static final String OBJECT_NAME = "meldexun.asmutil2:type=TransformMetrics";
+	private static final Map<String, Counters> CLASSES = new ConcurrentHashMap<>();
+	private static final Map<String, Counters> TRANSFORMERS = new ConcurrentHashMap<>();
+
+	static {
+		if (ENABLED) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBean(), new ObjectName(OBJECT_NAME));
+			} catch (Exception e) {
+				ASMUtil.LOGGER.warn("Failed registering transform metrics MXBean", e);
+			}
+		}
+	}
+
+	private TransformMetrics() {
+
+	}
+
+	static Counters forClass(String className) {
+		return counters(CLASSES, className);
+	}
+
+	static Counters forTransformer(String name) {
+		return counters(TRANSFORMERS, name);
+	}
+
+	private static Counters counters(Map<String, Counters> counters, String name) {
+		Counters c = counters.get(name);
+		if (c != null) {
+			return c;
+		}
+		return counters.computeIfAbsent(name, k -> new Counters());
+	}
+
+	/**
+	 * @return the current statistics, sorted by descending total time
+	 */
+	public static Snapshot snapshot() {
+		return new Snapshot(entries(CLASSES), entries(TRANSFORMERS));
+	}
+
+	private static List<Entry> entries(Map<String, Counters> counters) {
+		List<Entry> entries = new ArrayList<>(counters.size());
+		counters.forEach((name, c) -> entries.add(c.toEntry(name)));
+		entries.sort(Comparator.comparingLong(Entry::getTotalNanos).reversed());
+		return Collections.unmodifiableList(entries);
+	}
+
+	public static void reset() {
+		CLASSES.clear();
+		TRANSFORMERS.clear();
+	}
+
+	static final class Counters {
+
+		final LongAdder calls = new LongAdder();
+		final LongAdder matches = new LongAdder();
+		final LongAdder cacheHits = new LongAdder();
+		final LongAdder parseNanos = new LongAdder();
+		final LongAdder transformNanos = new LongAdder();
+		final LongAdder writeNanos = new LongAdder();
+		final LongAdder bytesIn = new LongAdder();
+		final LongAdder bytesOut = new LongAdder();
+		final LongAccumulator writeFlags = new LongAccumulator((a, b) -> a | b, 0);
+
+		Entry toEntry(String name) {
+			return new Entry(name, this.calls.sum(), this.matches.sum(), this.cacheHits.sum(), this.parseNanos.sum(),
+					this.transformNanos.sum(), this.writeNanos.sum(), this.bytesIn.sum(), this.bytesOut.sum(),
+					(int) this.writeFlags.get());
+		}
+
+	}
+
+	/**
+	 * Statistics of one class or transformer. For transformers only calls,
+	 * matches, transform time and write flags are recorded. Matches are the
+	 * number of transformations which changed the class or, for method
+	 * transformers, the number of transformed methods.
+	 */
+	public static final class Entry {
+
+		private final String name;
+		private final long calls;
+		private final long matches;
+		private final long cacheHits;
+		private final long parseNanos;
+		private final long transformNanos;
+		private final long writeNanos;
+		private final long bytesIn;
+		private final long bytesOut;
+		private final int writeFlags;
+
+		Entry(String name, long calls, long matches, long cacheHits, long parseNanos, long transformNanos,
+				long writeNanos, long bytesIn, long bytesOut, int writeFlags) {
+			this.name = name;
+			this.calls = calls;
+			this.matches = matches;
+			this.cacheHits = cacheHits;
+			this.parseNanos = parseNanos;
+			this.transformNanos = transformNanos;
+			this.writeNanos = writeNanos;
+			this.bytesIn = bytesIn;
+			this.bytesOut = bytesOut;
+			this.writeFlags = writeFlags;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public long getCalls() {
+			return this.calls;
+		}
+
+		public long getMatches() {
+			return this.matches;
+		}
+
+		public long getCacheHits() {
+			return this.cacheHits;
+		}
+
+		public long getParseNanos() {
+			return this.parseNanos;
+		}
+
+		public long getTransformNanos() {
+			return this.transformNanos;
+		}
+
+		public long getWriteNanos() {
+			return this.writeNanos;
+		}
+
+		public long getTotalNanos() {
+			return this.parseNanos + this.transformNanos + this.writeNanos;
+		}
+
+		public long getBytesIn() {
+			return this.bytesIn;
+		}
+
+		public long getBytesOut() {
+			return this.bytesOut;
+		}
+
+		public int getWriteFlags() {
+			return this.writeFlags;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"%s: calls=%d matches=%d cacheHits=%d parse=%dus transform=%dus write=%dus in=%dB out=%dB writeFlags=%d",
+					this.name, this.calls, this.matches, this.cacheHits, this.parseNanos / 1000,
+					this.transformNanos / 1000, this.writeNanos / 1000, this.bytesIn, this.bytesOut, this.writeFlags);
+		}
+
+	}
+
+	public static final class Snapshot {
+
+		private final List<Entry> classes;
+		private final List<Entry> transformers;
+
+		Snapshot(List<Entry> classes, List<Entry> transformers) {
+			this.classes = classes;
+			this.transformers = transformers;
+		}
+
+		public List<Entry> getClasses() {
+			return this.classes;
+		}
+
+		public List<Entry> getTransformers() {
+			return this.transformers;
+		}
+
+	}
+
+	public interface TransformMetricsMXBean {
+
+		List<Entry> getClasses();
+
+		List<Entry> getTransformers();
+
+		long getTotalNanos();
+
+		void reset();
+
+	}
+
+	private static final class MXBean implements TransformMetricsMXBean {
+
+		@Override
+		public List<Entry> getClasses() {
+			return entries(CLASSES);
+		}
+
+		@Override
+		public List<Entry> getTransformers() {
+			return entries(TRANSFORMERS);
+		}
+
+		@Override
+		public long getTotalNanos() {
+			long totalNanos = 0;
+			for (Counters counters : CLASSES.values()) {
+				totalNanos += counters.parseNanos.sum() + counters.transformNanos.sum() + counters.writeNanos.sum();
+			}
+			return totalNanos;
+		}
+
+		@Override
+		public void reset() {
+			TransformMetrics.reset();
+		}
+
+	}
+
+}
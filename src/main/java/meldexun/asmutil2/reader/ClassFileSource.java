@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Provides the class files read by {@link ClassUtil}.
+ */
+@FunctionalInterface
+public interface ClassFileSource {
+
+	/**
+	 * @param className the internal name of the class
+	 * @return the class file or {@code null} if the class can't be found
+	 */
+	ClassFile find(String className) throws IOException;
+
+	/**
+	 * Used to check whether persisted information about the class is still valid.
+	 * Sources should override this if they can locate classes without reading
+	 * them.
+	 * 
+	 * @param className the internal name of the class
+	 * @return the jar or class file containing the class or {@code null} if the
+	 *         class can't be found or is not located in the local file system
+	 */
+	default Path location(String className) throws IOException {
+		ClassFile classFile = this.find(className);
+		return classFile != null ? classFile.location() : null;
+	}
+
+	/**
+	 * @return the class loader whose resources are read or {@code null}. Sources
+	 *         must only reference the class loader weakly.
+	 */
+	default ClassLoader classLoader() {
+		return null;
+	}
+
+	/**
+	 * @return a string which changes whenever the provided class files may have
+	 *         changed or {@code null} if that is unknown. Results of
+	 *         transformations depending on the class hierarchy, e.g. computed
+	 *         frames, are only cached if it is known.
+	 */
+	default String fingerprint() {
+		return null;
+	}
+
+	default ClassFileSource orElse(ClassFileSource other) {
+		Objects.requireNonNull(other);
+		ClassFileSource first = this;
+		return new ClassFileSource() {
+
+			@Override
+			public ClassFile find(String className) throws IOException {
+				ClassFile classFile = first.find(className);
+				return classFile != null ? classFile : other.find(className);
+			}
+
+			@Override
+			public Path location(String className) throws IOException {
+				Path location = first.location(className);
+				return location != null ? location : other.location(className);
+			}
+
+			@Override
+			public ClassLoader classLoader() {
+				ClassLoader classLoader = first.classLoader();
+				return classLoader != null ? classLoader : other.classLoader();
+			}
+
+			@Override
+			public String fingerprint() {
+				String fingerprint = first.fingerprint();
+				String otherFingerprint = other.fingerprint();
+				return fingerprint != null && otherFingerprint != null ? fingerprint + ';' + otherFingerprint : null;
+			}
+
+		};
+	}
+
+	/**
+	 * @return a source which looks up class files as resources of the class
+	 *         loader
+	 */
+	static ClassFileSource of(ClassLoader classLoader) {
+		return new ClassLoaderClassFileSource(classLoader);
+	}
+
+	public static final class ClassFile {
+
+		private final ByteBuffer buffer;
+		private final Path location;
+
+		/**
+		 * @param location the jar or class file containing the class or {@code null}
+		 *                 if the class is not located in the local file system
+		 */
+		public ClassFile(ByteBuffer buffer, Path location) {
+			this.buffer = Objects.requireNonNull(buffer);
+			this.location = location;
+		}
+
+		public ByteBuffer buffer() {
+			return this.buffer;
+		}
+
+		public Path location() {
+			return this.location;
+		}
+
+	}
+
+}
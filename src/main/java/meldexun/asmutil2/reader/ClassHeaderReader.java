@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.reader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the access flags, name, super class and interfaces of a class directly
+ * from a {@link ByteBuffer} containing the class file. Constant pool entries are
+ * skipped by their size and only the names which are actually needed are
+ * decoded. The position of the buffer is not changed.
+ */
+final class ClassHeaderReader {
+
+	private final ByteBuffer buffer;
+	private final int[] constantOffsets;
+	private final int header;
+
+	ClassHeaderReader(ByteBuffer buffer) {
+		this.buffer = buffer;
+		int offset = buffer.position();
+		if (buffer.getInt(offset) != 0xCAFEBABE) {
+			throw new IllegalArgumentException("Not a class file");
+		}
+		offset += 8; // magic, minor and major class version
+		this.constantOffsets = new int[buffer.getShort(offset) & 0xFFFF];
+		offset += 2;
+		for (int i = 1; i < this.constantOffsets.length; i++) {
+			this.constantOffsets[i] = offset + 1;
+			switch (buffer.get(offset)) {
+			case 1: // Utf8
+				offset += 3 + (buffer.getShort(offset + 1) & 0xFFFF);
+				break;
+			case 7: // Class
+			case 8: // String
+			case 16: // MethodType
+			case 19: // Module
+			case 20: // Package
+				offset += 3;
+				break;
+			case 15: // MethodHandle
+				offset += 4;
+				break;
+			case 3: // Int
+			case 4: // Float
+			case 9: // Fieldref
+			case 10: // Methodref
+			case 11: // InterfaceMethodref
+			case 12: // NameAndType
+			case 17: // Dynamic
+			case 18: // InvokeDynamic
+				offset += 5;
+				break;
+			case 5: // Long
+			case 6: // Double
+				offset += 9;
+				i++;
+				break;
+			default:
+				throw new IllegalStateException();
+			}
+		}
+		this.header = offset;
+	}
+
+	int access() {
+		return this.buffer.getShort(this.header) & 0xFFFF;
+	}
+
+	String name() {
+		return this.readClass(this.header + 2);
+	}
+
+	String superName() {
+		return this.readClass(this.header + 4);
+	}
+
+	String[] interfaces() {
+		String[] interfaces = new String[this.buffer.getShort(this.header + 6) & 0xFFFF];
+		for (int i = 0; i < interfaces.length; i++) {
+			interfaces[i] = this.readClass(this.header + 8 + i * 2);
+		}
+		return interfaces;
+	}
+
+	/**
+	 * @return the name of the class constant referenced at the given offset or
+	 *         {@code null} if the index is 0
+	 */
+	private String readClass(int offset) {
+		int index = this.buffer.getShort(offset) & 0xFFFF;
+		if (index == 0) {
+			return null;
+		}
+		return this.readUtf8(this.buffer.getShort(this.constantOffsets[index]) & 0xFFFF);
+	}
+
+	private String readUtf8(int index) {
+		int offset = this.constantOffsets[index];
+		return IOUtil.readUTF(this.buffer, offset + 2, this.buffer.getShort(offset) & 0xFFFF);
+	}
+
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.reader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import meldexun.asmutil2.FileUtil;
+
+/**
+ * Read-only, memory-mapped index of class hierarchy information. Classes are
+ * ignored once the jar or class file they were read from changed. Files are
+ * replaced atomically and read into memory on Windows.
+ */
+final class ClassHierarchyIndex {
+
+	private static final int MAGIC = 0x4D434849;
+	private static final int FORMAT_VERSION = 3;
+	private static final int HEADER_SIZE = 16;
+	private static final int CLASS_HEADER_SIZE = 16;
+	private static final boolean MAP = !System.getProperty("os.name", "").toLowerCase(Locale.ROOT)
+			.startsWith("windows");
+
+	private final ByteBuffer buffer;
+	private final NameTable nameTable;
+	private final int nameOffsetsOffset;
+	private final String[] names;
+	private final ClassOrigin[] origins;
+	private final boolean[] validOrigins;
+	private final boolean classFilesUnchanged;
+	private final int classCount;
+	private final int tableOffset;
+	private final int tableMask;
+	private final int classesOffset;
+
+	private ClassHierarchyIndex(ByteBuffer buffer, NameTable nameTable, int offset, boolean classFilesUnchanged) {
+		this.buffer = buffer;
+		this.nameTable = nameTable;
+		this.classFilesUnchanged = classFilesUnchanged;
+
+		this.names = new String[buffer.getInt(offset)];
+		this.nameOffsetsOffset = offset + 4;
+		offset = buffer.getInt(offset + 4 + this.names.length * 4);
+
+		this.origins = new ClassOrigin[buffer.getInt(offset)];
+		this.validOrigins = new boolean[this.origins.length];
+		offset += 4;
+		for (int i = 0; i < this.origins.length; i++) {
+			String path = this.name(buffer.getInt(offset));
+			this.origins[i] = new ClassOrigin(path, buffer.getLong(offset + 4), buffer.getLong(offset + 12));
+			// the class files fingerprint covers the origins
+			this.validOrigins[i] = classFilesUnchanged || this.origins[i].isValid();
+			offset += 20;
+		}
+
+		this.classCount = buffer.getInt(offset);
+		this.tableMask = buffer.getInt(offset + 4) - 1;
+		this.tableOffset = offset + 8;
+		this.classesOffset = this.tableOffset + (this.tableMask + 1) * 4;
+	}
+
+	/**
+	 * @param mappings   identifies the name mappings of the loading instance
+	 * @param classFiles the {@link ClassFileSource#fingerprint() fingerprint} of
+	 *                   the class files of the loading instance or {@code null}
+	 * @return the index or {@code null} if the file does not exist or was written
+	 *         with other name mappings
+	 * @throws IOException if the file could not be read or is corrupted
+	 */
+	static ClassHierarchyIndex load(Path file, NameTable nameTable, String mappings, String classFiles)
+			throws IOException {
+		if (!Files.exists(file)) {
+			return null;
+		}
+		ByteBuffer buffer;
+		if (MAP) {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+		} else {
+			buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+		}
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION
+				|| buffer.getInt(12) != buffer.capacity() - HEADER_SIZE) {
+			throw new IOException("Invalid class hierarchy index: " + file);
+		}
+		ByteBuffer body = buffer.duplicate();
+		body.position(HEADER_SIZE);
+		if (FileUtil.checksum(body) != buffer.getInt(8)) {
+			throw new IOException("Corrupted class hierarchy index: " + file);
+		}
+		int offset = HEADER_SIZE;
+		int length = buffer.getShort(offset) & 0xFFFF;
+		if (!IOUtil.equalsUTF(buffer, offset + 2, length, mappings)) {
+			return null;
+		}
+		offset += 2 + length;
+		length = buffer.getShort(offset) & 0xFFFF;
+		boolean classFilesUnchanged = classFiles != null && !classFiles.isEmpty()
+				&& IOUtil.equalsUTF(buffer, offset + 2, length, classFiles);
+		offset += 2 + length;
+		return new ClassHierarchyIndex(buffer, nameTable, offset, classFilesUnchanged);
+	}
+
+	/**
+	 * @return {@code true} if the fingerprint of the class files did not change
+	 *         since the index was written, so indexed classes are neither changed
+	 *         nor shadowed by other classes
+	 */
+	boolean classFilesUnchanged() {
+		return this.classFilesUnchanged;
+	}
+
+	private String name(int nameId) {
+		String name = this.names[nameId];
+		if (name == null) {
+			int offset = this.buffer.getInt(this.nameOffsetsOffset + nameId * 4);
+			name = IOUtil.readUTF(this.buffer, offset + 2, this.buffer.getShort(offset) & 0xFFFF);
+			this.names[nameId] = name;
+		}
+		return name;
+	}
+
+	private boolean nameEquals(int nameId, String name) {
+		String decodedName = this.names[nameId];
+		if (decodedName != null) {
+			return decodedName.equals(name);
+		}
+		int offset = this.buffer.getInt(this.nameOffsetsOffset + nameId * 4);
+		return IOUtil.equalsUTF(this.buffer, offset + 2, this.buffer.getShort(offset) & 0xFFFF, name);
+	}
+
+	private static int hash(String className) {
+		int h = className.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @return the indexed class info or {@code null} if the class is not indexed
+	 *         or its origin changed
+	 */
+	ClassUtil.ClassInfo get(String className) {
+		for (int i = hash(className) & this.tableMask;; i = (i + 1) & this.tableMask) {
+			int offset = this.buffer.getInt(this.tableOffset + i * 4);
+			if (offset == 0) {
+				return null;
+			}
+			if (this.nameEquals(this.buffer.getInt(offset), className)) {
+				return this.read(offset);
+			}
+		}
+	}
+
+	private ClassUtil.ClassInfo read(int offset) {
+		int originId = this.buffer.getInt(offset + 4);
+		if (!this.validOrigins[originId]) {
+			return null;
+		}
+		int nameId = this.buffer.getInt(offset);
+		int access = this.buffer.getShort(offset + 8) & 0xFFFF;
+		int superId = this.buffer.getInt(offset + 10);
+		int interfaceCount = this.buffer.getShort(offset + 14) & 0xFFFF;
+		NameTable.Symbol[] interfaces = interfaceCount != 0 ? new NameTable.Symbol[interfaceCount]
+				: ClassUtil.ClassInfo.NO_INTERFACES;
+		for (int i = 0; i < interfaces.length; i++) {
+			interfaces[i] = this.nameTable.symbol(this.name(this.buffer.getInt(offset + CLASS_HEADER_SIZE + i * 4)));
+		}
+		return new ClassUtil.ClassInfo(access, this.nameTable.symbol(this.name(nameId)),
+				superId != -1 ? this.nameTable.symbol(this.name(superId)) : null, interfaces,
+				this.origins[originId]);
+	}
+
+	/**
+	 * @return all indexed classes whose origin did not change
+	 */
+	List<ClassUtil.ClassInfo> validEntries() {
+		List<ClassUtil.ClassInfo> entries = new ArrayList<>();
+		int offset = this.classesOffset;
+		for (int i = 0; i < this.classCount; i++) {
+			ClassUtil.ClassInfo classInfo = this.read(offset);
+			if (classInfo != null) {
+				entries.add(classInfo);
+			}
+			offset += CLASS_HEADER_SIZE + (this.buffer.getShort(offset + 14) & 0xFFFF) * 4;
+		}
+		return entries;
+	}
+
+	/**
+	 * Writes all classes whose origin is known and did not change to a new index
+	 * file which atomically replaces the given file.
+	 *
+	 * @param mappings   identifies the name mappings of the writing instance
+	 * @param classFiles the {@link ClassFileSource#fingerprint() fingerprint} of
+	 *                   the class files of the writing instance or {@code null}
+	 */
+	static void write(Path file, String mappings, String classFiles, Collection<ClassUtil.ClassInfo> classes)
+			throws IOException {
+		Map<String, Integer> nameIds = new LinkedHashMap<>();
+		Map<ClassOrigin, Integer> originIds = new LinkedHashMap<>();
+		Map<ClassOrigin, Boolean> validOrigins = new HashMap<>();
+		List<ClassUtil.ClassInfo> indexedClasses = new ArrayList<>();
+		for (ClassUtil.ClassInfo classInfo : classes) {
+			// classes read before their jar changed must not be covered by the fingerprint
+			if (classInfo.origin == null || !validOrigins.computeIfAbsent(classInfo.origin, ClassOrigin::isValid)) {
+				continue;
+			}
+			indexedClasses.add(classInfo);
+			nameIds.computeIfAbsent(classInfo.name.name, k -> nameIds.size());
+			if (classInfo.superClass != null) {
+				nameIds.computeIfAbsent(classInfo.superClass.name, k -> nameIds.size());
+			}
+			for (NameTable.Symbol interfaceSymbol : classInfo.interfaces) {
+				nameIds.computeIfAbsent(interfaceSymbol.name, k -> nameIds.size());
+			}
+			nameIds.computeIfAbsent(classInfo.origin.path, k -> nameIds.size());
+			originIds.computeIfAbsent(classInfo.origin, k -> originIds.size());
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(0); // checksum
+			out.writeInt(0); // body length
+			out.writeUTF(mappings);
+			out.writeUTF(classFiles != null ? classFiles : "");
+
+			// offsets of the names followed by the offset of the origins
+			ByteArrayOutputStream nameBytes = new ByteArrayOutputStream();
+			DataOutputStream nameOut = new DataOutputStream(nameBytes);
+			int namesOffset = out.size() + 4 + (nameIds.size() + 1) * 4;
+			out.writeInt(nameIds.size());
+			for (String name : nameIds.keySet()) {
+				out.writeInt(namesOffset + nameOut.size());
+				nameOut.writeUTF(name);
+			}
+			out.writeInt(namesOffset + nameOut.size());
+			nameBytes.writeTo(out);
+
+			out.writeInt(originIds.size());
+			for (ClassOrigin origin : originIds.keySet()) {
+				out.writeInt(nameIds.get(origin.path));
+				out.writeLong(origin.size);
+				out.writeLong(origin.lastModified);
+			}
+
+			// open addressing table of class offsets followed by the classes
+			int tableSize = Integer.highestOneBit(Math.max(indexedClasses.size(), 2) * 2 - 1) << 1;
+			int[] table = new int[tableSize];
+			ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+			DataOutputStream classOut = new DataOutputStream(classBytes);
+			int classesOffset = out.size() + 8 + tableSize * 4;
+			for (ClassUtil.ClassInfo classInfo : indexedClasses) {
+				int i = hash(classInfo.name.name) & (tableSize - 1);
+				while (table[i] != 0) {
+					i = (i + 1) & (tableSize - 1);
+				}
+				table[i] = classesOffset + classOut.size();
+				classOut.writeInt(nameIds.get(classInfo.name.name));
+				classOut.writeInt(originIds.get(classInfo.origin));
+				classOut.writeShort(classInfo.access);
+				classOut.writeInt(classInfo.superClass != null ? nameIds.get(classInfo.superClass.name) : -1);
+				classOut.writeShort(classInfo.interfaces.length);
+				for (NameTable.Symbol interfaceSymbol : classInfo.interfaces) {
+					classOut.writeInt(nameIds.get(interfaceSymbol.name));
+				}
+			}
+			out.writeInt(indexedClasses.size());
+			out.writeInt(tableSize);
+			for (int offset : table) {
+				out.writeInt(offset);
+			}
+			classBytes.writeTo(out);
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+		buffer.putInt(8, FileUtil.checksum(buffer.array(), HEADER_SIZE, buffer.capacity() - HEADER_SIZE));
+		buffer.putInt(12, buffer.capacity() - HEADER_SIZE);
+		FileUtil.writeAtomically(file, buffer.array());
+	}
+
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.reader;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import meldexun.asmutil2.ASMUtil;
+import meldexun.asmutil2.reader.ClassUtil.ClassInfo;
+
+/**
+ * Caches the {@link ClassInfo} of classes by name, bounded by
+ * {@code meldexun.asm.classInfoCacheSize} and {@link EvictionPolicy}. Each class
+ * is loaded at most once at a time, failed loads are not cached.
+ */
+public final class ClassInfoCache {
+
+	static final int DEFAULT_MAX_SIZE = Integer.getInteger("meldexun.asm.classInfoCacheSize", 65536);
+	static final EvictionPolicy DEFAULT_EVICTION_POLICY = EvictionPolicy.fromSystemProperty();
+
+	public enum EvictionPolicy {
+
+		/**
+		 * Never evicts entries.
+		 */
+		UNBOUNDED,
+		/**
+		 * Evicts the least recently used entries.
+		 */
+		LRU,
+		/**
+		 * Evicts the least recently used entries, but classes which are super classes
+		 * or interfaces of other cached classes only after all other classes. Keeps
+		 * common hierarchy roots cached while they are in use.
+		 */
+		HIERARCHY;
+
+		static EvictionPolicy fromSystemProperty() {
+			String policy = System.getProperty("meldexun.asm.classInfoCacheEviction", "hierarchy");
+			try {
+				return valueOf(policy.toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException e) {
+				ASMUtil.LOGGER.warn("Unknown class info cache eviction policy {}, using hierarchy", policy);
+				return HIERARCHY;
+			}
+		}
+
+	}
+
+	private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+	private final int maxSize;
+	private final EvictionPolicy evictionPolicy;
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicLong clock = new AtomicLong();
+	private final ReentrantLock evictionLock = new ReentrantLock();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	ClassInfoCache(int maxSize, EvictionPolicy evictionPolicy) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize must be positive");
+		}
+		this.maxSize = maxSize;
+		this.evictionPolicy = evictionPolicy;
+	}
+
+	ClassInfo computeIfAbsent(String className, Function<String, ClassInfo> loader) {
+		Entry entry = this.cache.get(className);
+		if (entry == null) {
+			Entry newEntry = new Entry(className, this.clock.incrementAndGet());
+			entry = this.cache.putIfAbsent(className, newEntry);
+			if (entry == null) {
+				this.misses.increment();
+				this.size.incrementAndGet();
+				ClassInfo classInfo = this.load(newEntry, loader);
+				if (this.evictionPolicy != EvictionPolicy.UNBOUNDED && this.size.get() > this.maxSize) {
+					this.evict();
+				}
+				return classInfo;
+			}
+		}
+		this.hits.increment();
+		entry.lastAccess = this.clock.get();
+		ClassInfo classInfo = entry.classInfo;
+		return classInfo != null ? classInfo : entry.await();
+	}
+
+	/**
+	 * Removes the entry of the class if it still holds the given class info.
+	 */
+	void remove(String className, ClassInfo classInfo) {
+		Entry entry = this.cache.get(className);
+		if (entry != null && entry.classInfo == classInfo && this.cache.remove(className, entry)) {
+			this.size.decrementAndGet();
+		}
+	}
+
+	/**
+	 * @return {@code true} if the class is cached or currently loaded
+	 */
+	boolean contains(String className) {
+		return this.cache.containsKey(className);
+	}
+
+	private ClassInfo load(Entry entry, Function<String, ClassInfo> loader) {
+		ClassInfo classInfo;
+		try {
+			classInfo = Objects.requireNonNull(loader.apply(entry.className));
+		} catch (Throwable e) {
+			// removed before waiters are released so that retries load again
+			if (this.cache.remove(entry.className, entry)) {
+				this.size.decrementAndGet();
+			}
+			entry.future.completeExceptionally(e);
+			throw e;
+		}
+		entry.classInfo = classInfo;
+		entry.future.complete(classInfo);
+		return classInfo;
+	}
+
+	private void evict() {
+		if (!this.evictionLock.tryLock()) {
+			return;
+		}
+		try {
+			int targetSize = this.maxSize - (this.maxSize >>> 3);
+			if (this.size.get() <= targetSize) {
+				return;
+			}
+			Set<String> inUse = this.evictionPolicy == EvictionPolicy.HIERARCHY ? this.superTypesOfCachedClasses()
+					: Collections.emptySet();
+			// snapshot the sort keys, they change concurrently
+			List<Candidate> candidates = new ArrayList<>(this.cache.size());
+			for (Entry entry : this.cache.values()) {
+				if (entry.classInfo == null) {
+					// still loading
+					continue;
+				}
+				candidates.add(new Candidate(entry, inUse.contains(entry.className), entry.lastAccess));
+			}
+			candidates.sort(Comparator.<Candidate>comparingInt(c -> c.inUse ? 1 : 0)
+					.thenComparingLong(c -> c.lastAccess));
+			for (int i = 0; i < candidates.size() && this.size.get() > targetSize; i++) {
+				Entry entry = candidates.get(i).entry;
+				if (this.cache.remove(entry.className, entry)) {
+					this.size.decrementAndGet();
+					this.evictions.increment();
+				}
+			}
+		} finally {
+			this.evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Computed when evicting instead of counted per entry, so it stays correct
+	 * when classes are evicted and loaded again.
+	 */
+	private Set<String> superTypesOfCachedClasses() {
+		Set<String> superTypes = new HashSet<>();
+		for (Entry entry : this.cache.values()) {
+			ClassInfo classInfo = entry.classInfo;
+			if (classInfo == null) {
+				continue;
+			}
+			if (classInfo.superClass != null) {
+				superTypes.add(classInfo.superClass.name);
+			}
+			for (NameTable.Symbol interfaceSymbol : classInfo.interfaces) {
+				superTypes.add(interfaceSymbol.name);
+			}
+		}
+		return superTypes;
+	}
+
+	Collection<ClassInfo> values() {
+		List<ClassInfo> values = new ArrayList<>(this.cache.size());
+		for (Entry entry : this.cache.values()) {
+			ClassInfo classInfo = entry.classInfo;
+			if (classInfo != null) {
+				values.add(classInfo);
+			}
+		}
+		return values;
+	}
+
+	public void clear() {
+		this.evictionLock.lock();
+		try {
+			for (String className : this.cache.keySet()) {
+				if (this.cache.remove(className) != null) {
+					this.size.decrementAndGet();
+				}
+			}
+		} finally {
+			this.evictionLock.unlock();
+		}
+	}
+
+	public int size() {
+		return this.size.get();
+	}
+
+	public int maxSize() {
+		return this.maxSize;
+	}
+
+	public EvictionPolicy evictionPolicy() {
+		return this.evictionPolicy;
+	}
+
+	public long hits() {
+		return this.hits.sum();
+	}
+
+	public long misses() {
+		return this.misses.sum();
+	}
+
+	public long evictions() {
+		return this.evictions.sum();
+	}
+
+	public double hitRate() {
+		long hits = this.hits.sum();
+		long total = hits + this.misses.sum();
+		return total != 0 ? (double) hits / total : 0.0D;
+	}
+
+	private static final class Entry {
+
+		final String className;
+		final CompletableFuture<ClassInfo> future = new CompletableFuture<>();
+		/**
+		 * {@code null} while the class is loading
+		 */
+		volatile ClassInfo classInfo;
+		volatile long lastAccess;
+
+		Entry(String className, long lastAccess) {
+			this.className = className;
+			this.lastAccess = lastAccess;
+		}
+
+		ClassInfo await() {
+			try {
+				return this.future.join();
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw e;
+			}
+		}
+
+	}
+
+	private static final class Candidate {
+
+		final Entry entry;
+		final boolean inUse;
+		final long lastAccess;
+
+		Candidate(Entry entry, boolean inUse, long lastAccess) {
+			this.entry = entry;
+			this.inUse = inUse;
+			this.lastAccess = lastAccess;
+		}
+
+	}
+
+}
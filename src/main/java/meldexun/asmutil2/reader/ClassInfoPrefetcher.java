@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.reader;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Worker pool shared by all {@link ClassUtil} instances which loads the super
+ * classes and interfaces of newly loaded classes in the background. Enabled
+ * with the system property {@code meldexun.asm.prefetch}. The number of
+ * threads is set by {@code meldexun.asm.prefetchThreads} and the number of
+ * queued classes is limited by {@code meldexun.asm.prefetchQueueSize}, classes
+ * are not prefetched while the queue is full. Idle threads terminate.
+ */
+final class ClassInfoPrefetcher {
+
+	static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("meldexun.asm.prefetch"));
+	private static final int THREADS = Integer.getInteger("meldexun.asm.prefetchThreads", 2);
+	private static final int QUEUE_SIZE = Integer.getInteger("meldexun.asm.prefetchQueueSize", 256);
+
+	private ClassInfoPrefetcher() {
+
+	}
+
+	/**
+	 * Runs the task on the worker pool or drops it if the queue is full.
+	 */
+	static void submit(Runnable task) {
+		Holder.EXECUTOR.execute(task);
+	}
+
+	private static final class Holder {
+
+		static final ThreadPoolExecutor EXECUTOR;
+		static {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<>(QUEUE_SIZE), new ThreadFactory() {
+
+						private final AtomicInteger threadNumber = new AtomicInteger();
+
+						@Override
+						public Thread newThread(Runnable task) {
+							Thread thread = new Thread(task, "ASMUtil Prefetch #" + this.threadNumber.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+
+					}, new ThreadPoolExecutor.DiscardPolicy());
+			executor.allowCoreThreadTimeOut(true);
+			EXECUTOR = executor;
+		}
+
+	}
+
+}
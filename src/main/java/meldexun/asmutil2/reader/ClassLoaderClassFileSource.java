@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import meldexun.asmutil2.ASMUtil;
+
+/**
+ * References the class loader weakly so that cached {@link ClassUtil} instances
+ * don't keep discarded class loaders alive.
+ */
+final class ClassLoaderClassFileSource implements ClassFileSource {
+
+	private final WeakReference<ClassLoader> classLoader;
+	private final int hash;
+	/**
+	 * Holds the fingerprint once it was computed, which may be {@code null}.
+	 */
+	private volatile String[] fingerprint;
+
+	ClassLoaderClassFileSource(ClassLoader classLoader) {
+		this.classLoader = new WeakReference<>(Objects.requireNonNull(classLoader));
+		this.hash = classLoader.hashCode();
+	}
+
+	@Override
+	public ClassLoader classLoader() {
+		return this.classLoader.get();
+	}
+
+	@Override
+	public ClassFile find(String className) throws IOException {
+		URL url = this.resource(className);
+		if (url == null) {
+			return null;
+		}
+		try {
+			return new ClassFile(IOUtil.read(url), location(url));
+		} catch (URISyntaxException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Known if the class loader and its parents are {@link URLClassLoader}s with
+	 * local URLs, the system class loader or the loaders of the JDK. Computed once,
+	 * URLs added to a class loader later are searched last and only provide
+	 * classes which were missing before.
+	 */
+	@Override
+	public String fingerprint() {
+		String[] fingerprint = this.fingerprint;
+		if (fingerprint == null) {
+			ClassLoader classLoader = this.classLoader.get();
+			if (classLoader == null) {
+				return null;
+			}
+			fingerprint = new String[] { fingerprint(classLoader) };
+			this.fingerprint = fingerprint;
+		}
+		return fingerprint[0];
+	}
+
+	private static String fingerprint(ClassLoader classLoader) {
+		List<Path> classPath = new ArrayList<>();
+		ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader();
+		for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+			if (loader instanceof URLClassLoader) {
+				for (URL url : ((URLClassLoader) loader).getURLs()) {
+					Path file;
+					try {
+						file = ClassOrigin.file(url);
+					} catch (IOException | URISyntaxException e) {
+						file = null;
+					}
+					if (file == null) {
+						return null;
+					}
+					classPath.add(file);
+				}
+			} else if (loader == systemClassLoader) {
+				for (String path : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+					if (!path.isEmpty()) {
+						classPath.add(Paths.get(path));
+					}
+				}
+			} else if (loader == systemClassLoader.getParent()) {
+				// classes of the JDK are covered by the java version
+			} else {
+				return null;
+			}
+		}
+		try {
+			return ClassOrigin.fingerprint(classPath);
+		} catch (IOException e) {
+			ASMUtil.LOGGER.warn("Failed computing fingerprint of class path {}", classPath, e);
+			return null;
+		}
+	}
+
+	@Override
+	public Path location(String className) throws IOException {
+		URL url = this.resource(className);
+		return url != null ? location(url) : null;
+	}
+
+	private URL resource(String className) throws IOException {
+		ClassLoader classLoader = this.classLoader.get();
+		if (classLoader == null) {
+			throw new IOException("Class loader was garbage collected");
+		}
+		return classLoader.getResource(className + ".class");
+	}
+
+	private static Path location(URL url) {
+		try {
+			return ClassOrigin.file(url);
+		} catch (IOException | URISyntaxException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof ClassLoaderClassFileSource)) {
+			return false;
+		}
+		ClassLoader classLoader = this.classLoader.get();
+		return classLoader != null && classLoader.equals(((ClassLoaderClassFileSource) obj).classLoader.get());
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hash;
+	}
+
+}
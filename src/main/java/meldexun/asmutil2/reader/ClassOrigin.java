@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.reader;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * The jar or class file a class was read from together with its size and
+ * modification time at that point.
+ */
+final class ClassOrigin {
+
+	final String path;
+	final long size;
+	final long lastModified;
+
+	ClassOrigin(String path, long size, long lastModified) {
+		this.path = Objects.requireNonNull(path);
+		this.size = size;
+		this.lastModified = lastModified;
+	}
+
+	static ClassOrigin of(Path file) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		return new ClassOrigin(file.toString(), attributes.size(), attributes.lastModifiedTime().toMillis());
+	}
+
+	/**
+	 * @return the file containing the resource or {@code null} if the resource is
+	 *         not located in the local file system
+	 */
+	static Path file(URL url) throws IOException, URISyntaxException {
+		if (url.getProtocol().equals("file")) {
+			return Paths.get(url.toURI());
+		}
+		if (url.getProtocol().equals("jar")) {
+			String spec = url.getPath();
+			int separator = spec.indexOf("!/");
+			if (separator == -1) {
+				return null;
+			}
+			URL jarUrl = new URL(spec.substring(0, separator));
+			if (!jarUrl.getProtocol().equals("file")) {
+				return null;
+			}
+			return Paths.get(jarUrl.toURI());
+		}
+		return null;
+	}
+
+	/**
+	 * @return a digest of the paths, sizes and modification times of the files
+	 *         and the class files in the directories
+	 */
+	static String fingerprint(Iterable<Path> files) throws IOException {
+		MessageDigest digest = IOUtil.sha256();
+		for (Path file : files) {
+			if (Files.isDirectory(file)) {
+				try (Stream<Path> classFiles = Files.walk(file)) {
+					for (Path classFile : (Iterable<Path>) classFiles.sorted()::iterator) {
+						if (classFile.getFileName().toString().endsWith(".class")) {
+							update(digest, classFile);
+						}
+					}
+				}
+			} else if (Files.exists(file)) {
+				update(digest, file);
+			} else {
+				digest.update(file.toString().getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) 0);
+			}
+		}
+		return IOUtil.toHex(digest.digest());
+	}
+
+	private static void update(MessageDigest digest, Path file) throws IOException {
+		ClassOrigin origin = of(file);
+		digest.update(origin.path.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(ByteBuffer.allocate(16).putLong(origin.size).putLong(origin.lastModified).array());
+	}
+
+	boolean isValid() {
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(Paths.get(this.path), BasicFileAttributes.class);
+			return attributes.size() == this.size && attributes.lastModifiedTime().toMillis() == this.lastModified;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof ClassOrigin)) {
+			return false;
+		}
+		ClassOrigin other = (ClassOrigin) obj;
+		return this.path.equals(other.path) && this.size == other.size && this.lastModified == other.lastModified;
+	}
+
+	@Override
+	public int hashCode() {
+		int h = 1;
+		h = h * 31 + this.path.hashCode();
+		h = h * 31 + Long.hashCode(this.size);
+		h = h * 31 + Long.hashCode(this.lastModified);
+		return h;
+	}
+
+}
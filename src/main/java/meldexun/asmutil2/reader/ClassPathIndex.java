@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.reader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import meldexun.asmutil2.ASMUtil;
+
+/**
+ * Indexes the class files of a list of jar files and directories once and
+ * serves them without going through a class loader. The central directories of
+ * all jars are read in parallel and the jars are kept open until the index is
+ * closed. Like on a class path the first root containing a class wins.
+ */
+public final class ClassPathIndex implements ClassFileSource, Closeable {
+
+	private final List<Root> roots;
+	private final Map<String, Root> classes;
+	private volatile String fingerprint;
+
+	private ClassPathIndex(List<Root> roots, Map<String, Root> classes) {
+		this.roots = roots;
+		this.classes = classes;
+	}
+
+	/**
+	 * Roots which can't be indexed, e.g. corrupt jars, are skipped with a warning
+	 * like a class loader would.
+	 */
+	public static ClassPathIndex create(List<Path> roots) throws IOException {
+		List<Root> indexedRoots = roots.parallelStream()
+				.filter(Files::exists)
+				.map(path -> {
+					try {
+						return index(path);
+					} catch (IOException e) {
+						ASMUtil.LOGGER.warn("Failed indexing class path root {}, skipping it", path, e);
+						return null;
+					}
+				})
+				.filter(Objects::nonNull)
+				.collect(Collectors.toList());
+		int classCount = 0;
+		for (Root root : indexedRoots) {
+			classCount += root.classNames.size();
+		}
+		Map<String, Root> classes = new HashMap<>(classCount * 4 / 3 + 1);
+		for (Root root : indexedRoots) {
+			for (String className : root.classNames) {
+				classes.putIfAbsent(className, root);
+			}
+			root.classNames = null;
+		}
+		return new ClassPathIndex(indexedRoots, classes);
+	}
+
+	/**
+	 * @return an index of the roots of the {@code java.class.path} system property
+	 */
+	public static ClassPathIndex createFromClassPath() throws IOException {
+		return create(Arrays.stream(System.getProperty("java.class.path", "").split(File.pathSeparator))
+				.filter(s -> !s.isEmpty())
+				.map(Paths::get)
+				.collect(Collectors.toList()));
+	}
+
+	private static Root index(Path path) throws IOException {
+		if (Files.isDirectory(path)) {
+			return DirectoryRoot.index(path);
+		}
+		return JarRoot.index(path);
+	}
+
+	@Override
+	public ClassFile find(String className) throws IOException {
+		Root root = this.classes.get(className);
+		if (root == null) {
+			return null;
+		}
+		return root.read(className);
+	}
+
+	@Override
+	public Path location(String className) {
+		Root root = this.classes.get(className);
+		if (root == null) {
+			return null;
+		}
+		return root.location(className);
+	}
+
+	public int size() {
+		return this.classes.size();
+	}
+
+	@Override
+	public String fingerprint() {
+		String fingerprint = this.fingerprint;
+		if (fingerprint == null) {
+			List<Path> paths = new ArrayList<>(this.roots.size());
+			for (Root root : this.roots) {
+				paths.add(root.path);
+			}
+			try {
+				fingerprint = ClassOrigin.fingerprint(paths);
+			} catch (IOException e) {
+				ASMUtil.LOGGER.warn("Failed computing fingerprint of class path index", e);
+				return null;
+			}
+			this.fingerprint = fingerprint;
+		}
+		return fingerprint;
+	}
+
+	@Override
+	public void close() throws IOException {
+		close(this.roots);
+	}
+
+	private static void close(List<Root> roots) throws IOException {
+		IOException exception = null;
+		for (Root root : roots) {
+			try {
+				root.close();
+			} catch (IOException e) {
+				if (exception == null) {
+					exception = e;
+				} else {
+					exception.addSuppressed(e);
+				}
+			}
+		}
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	private abstract static class Root implements Closeable {
+
+		final Path path;
+		/** Only set while the index is created. */
+		List<String> classNames = new ArrayList<>();
+
+		Root(Path path) {
+			this.path = path;
+		}
+
+		abstract ClassFile read(String className) throws IOException;
+
+		abstract Path location(String className);
+
+		@Override
+		public void close() throws IOException {
+
+		}
+
+	}
+
+	private static final class DirectoryRoot extends Root {
+
+		DirectoryRoot(Path path) {
+			super(path);
+		}
+
+		static DirectoryRoot index(Path path) throws IOException {
+			DirectoryRoot root = new DirectoryRoot(path);
+			try (Stream<Path> files = Files.walk(path)) {
+				files.forEach(file -> {
+					String fileName = path.relativize(file).toString().replace(File.separatorChar, '/');
+					if (fileName.endsWith(".class")) {
+						root.classNames.add(fileName.substring(0, fileName.length() - 6));
+					}
+				});
+			}
+			return root;
+		}
+
+		@Override
+		Path location(String className) {
+			return this.path.resolve(className + ".class");
+		}
+
+		@Override
+		ClassFile read(String className) throws IOException {
+			Path file = this.location(className);
+			return new ClassFile(ByteBuffer.wrap(Files.readAllBytes(file)), file);
+		}
+
+	}
+
+	private static final class JarRoot extends Root {
+
+		private final ZipFile zipFile;
+
+		JarRoot(Path path, ZipFile zipFile) {
+			super(path);
+			this.zipFile = zipFile;
+		}
+
+		static JarRoot index(Path path) throws IOException {
+			ZipFile zipFile = new ZipFile(path.toFile());
+			try {
+				JarRoot root = new JarRoot(path, zipFile);
+				Enumeration<? extends ZipEntry> entries = zipFile.entries();
+				while (entries.hasMoreElements()) {
+					String entryName = entries.nextElement().getName();
+					if (entryName.endsWith(".class")) {
+						root.classNames.add(entryName.substring(0, entryName.length() - 6));
+					}
+				}
+				return root;
+			} catch (RuntimeException e) {
+				// e.g. malformed entry names
+				IOException exception = new IOException("Failed reading entries of " + path, e);
+				try {
+					zipFile.close();
+				} catch (IOException e1) {
+					exception.addSuppressed(e1);
+				}
+				throw exception;
+			}
+		}
+
+		@Override
+		Path location(String className) {
+			return this.path;
+		}
+
+		@Override
+		ClassFile read(String className) throws IOException {
+			ZipEntry entry = this.zipFile.getEntry(className + ".class");
+			if (entry == null) {
+				return null;
+			}
+			try (InputStream in = this.zipFile.getInputStream(entry)) {
+				return new ClassFile(IOUtil.read(in, (int) entry.getSize()), this.path);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.zipFile.close();
+		}
+
+	}
+
+}
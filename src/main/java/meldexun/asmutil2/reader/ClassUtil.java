@@ -5,31 +5,41 @@
 
 package meldexun.asmutil2.reader;
 
-import java.io.BufferedInputStream;
-import java.io.DataInput;
-import java.io.DataInputStream;
 import java.io.IOException;
-import java.net.URISyntaxException;
-import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.Objects;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
 import org.objectweb.asm.Opcodes;
 
+import meldexun.asmutil2.ASMUtil;
 import meldexun.asmutil2.ClassTransformException;
+import meldexun.asmutil2.TransformEvents;
+import meldexun.asmutil2.reader.NameTable.Symbol;
 
 public final class ClassUtil {
 
 	public static final class Configuration {
 
+		private static final MissingClassPolicy DEFAULT_MISSING_CLASS_POLICY = MissingClassPolicy.fromSystemProperty();
 		public static final Configuration DEFAULT = new Configuration(Configuration.class.getClassLoader());
-		private final ClassLoader classLoader;
-		private final Map<String, String> obfuscationMap;
-		private final Map<String, String> deobfuscationMap;
+		private final ClassFileSource classFileSource;
+		private final NameMapping obfuscationMapping;
+		private final NameMapping deobfuscationMapping;
+		private final MissingClassPolicy missingClassPolicy;
+		private String mappings;
 
 		public Configuration(ClassLoader classLoader) {
 			this(classLoader, null, null);
@@ -37,9 +47,52 @@ public final class ClassUtil {
 
 		public Configuration(ClassLoader classLoader, Map<String, String> obfuscationMap,
 				Map<String, String> deobfuscationMap) {
-			this.classLoader = Objects.requireNonNull(classLoader);
-			this.obfuscationMap = obfuscationMap;
-			this.deobfuscationMap = deobfuscationMap;
+			this(ClassFileSource.of(classLoader), obfuscationMap, deobfuscationMap);
+		}
+
+		public Configuration(ClassFileSource classFileSource) {
+			this(classFileSource, (NameMapping) null, (NameMapping) null);
+		}
+
+		public Configuration(ClassFileSource classFileSource, Map<String, String> obfuscationMap,
+				Map<String, String> deobfuscationMap) {
+			this(classFileSource, compile(obfuscationMap), compile(deobfuscationMap));
+		}
+
+		/**
+		 * @param classFileSource      the source of class files, e.g. a
+		 *                             {@link ClassPathIndex} which falls back to
+		 *                             {@link ClassFileSource#of(ClassLoader)} for
+		 *                             classes of the JDK
+		 * @param obfuscationMapping   maps deobfuscated to obfuscated names or
+		 *                             {@code null}
+		 * @param deobfuscationMapping maps obfuscated to deobfuscated names or
+		 *                             {@code null}
+		 */
+		public Configuration(ClassFileSource classFileSource, NameMapping obfuscationMapping,
+				NameMapping deobfuscationMapping) {
+			this(classFileSource, obfuscationMapping, deobfuscationMapping, DEFAULT_MISSING_CLASS_POLICY);
+		}
+
+		/**
+		 * @param missingClassPolicy handles classes which can't be found in the
+		 *                           {@code classFileSource}
+		 * @see #Configuration(ClassFileSource, NameMapping, NameMapping)
+		 */
+		public Configuration(ClassFileSource classFileSource, NameMapping obfuscationMapping,
+				NameMapping deobfuscationMapping, MissingClassPolicy missingClassPolicy) {
+			this.classFileSource = Objects.requireNonNull(classFileSource);
+			this.obfuscationMapping = obfuscationMapping != null && obfuscationMapping.size() != 0
+					? obfuscationMapping
+					: null;
+			this.deobfuscationMapping = deobfuscationMapping != null && deobfuscationMapping.size() != 0
+					? deobfuscationMapping
+					: null;
+			this.missingClassPolicy = Objects.requireNonNull(missingClassPolicy);
+		}
+
+		private static NameMapping compile(Map<String, String> map) {
+			return map != null && !map.isEmpty() ? NameMapping.of(map) : null;
 		}
 
 		@Override
@@ -51,193 +104,849 @@ public final class ClassUtil {
 				return false;
 			}
 			Configuration other = (Configuration) obj;
-			return this.classLoader.equals(other.classLoader)
-					&& Objects.equals(this.obfuscationMap, other.obfuscationMap)
-					&& Objects.equals(this.deobfuscationMap, other.deobfuscationMap);
+			return this.classFileSource.equals(other.classFileSource)
+					&& Objects.equals(this.obfuscationMapping, other.obfuscationMapping)
+					&& Objects.equals(this.deobfuscationMapping, other.deobfuscationMapping)
+					&& this.missingClassPolicy.equals(other.missingClassPolicy);
 		}
 
 		@Override
 		public int hashCode() {
 			int h = 1;
-			h = h * 31 + this.classLoader.hashCode();
-			h = h * 31 + Objects.hashCode(this.obfuscationMap);
-			h = h * 31 + Objects.hashCode(this.deobfuscationMap);
+			h = h * 31 + this.classFileSource.hashCode();
+			h = h * 31 + Objects.hashCode(this.obfuscationMapping);
+			h = h * 31 + Objects.hashCode(this.deobfuscationMapping);
+			h = h * 31 + this.missingClassPolicy.hashCode();
 			return h;
 		}
 
-		public String obfuscate(String className) {
-			if (this.obfuscationMap == null || this.obfuscationMap.isEmpty()) {
-				return className;
+		/**
+		 * @return {@code null} if the class files or the policy for missing classes
+		 *         can't be fingerprinted
+		 * @see ClassUtil#hierarchyFingerprint()
+		 */
+		String fingerprint() {
+			String missingClassPolicy;
+			if (this.missingClassPolicy == MissingClassPolicy.THROW) {
+				missingClassPolicy = "throw";
+			} else if (this.missingClassPolicy == MissingClassPolicy.ASSUME_OBJECT) {
+				missingClassPolicy = "object";
+			} else {
+				return null;
 			}
-			String s = this.obfuscationMap.get(className);
-			if (s != null) {
-				return s;
+			String classFiles = this.classFileSource.fingerprint();
+			if (classFiles == null) {
+				return null;
 			}
-			int i = className.lastIndexOf('$');
-			if (i != -1) {
-				return this.obfuscate(className.substring(0, i)) + className.substring(i);
+			return System.getProperty("java.version") + ';' + this.mappings() + ';' + missingClassPolicy + ';'
+					+ classFiles;
+		}
+
+		/**
+		 * Identifies the name mappings by a digest of their entries, e.g. in persisted
+		 * class hierarchy indices.
+		 */
+		String mappings() {
+			String mappings = this.mappings;
+			if (mappings == null) {
+				MessageDigest digest = IOUtil.sha256();
+				digest(digest, this.obfuscationMapping);
+				digest(digest, this.deobfuscationMapping);
+				mappings = IOUtil.toHex(digest.digest());
+				this.mappings = mappings;
 			}
-			return className;
+			return mappings;
 		}
 
-		public String deobfuscate(String className) {
-			if (this.deobfuscationMap == null || this.deobfuscationMap.isEmpty()) {
-				return className;
+		private static void digest(MessageDigest digest, NameMapping mapping) {
+			int size = mapping != null ? mapping.size() : 0;
+			digest.update(ByteBuffer.allocate(4).putInt(size).array());
+			if (mapping != null) {
+				mapping.digest(digest);
 			}
-			String s = this.deobfuscationMap.get(className);
-			if (s != null) {
-				return s;
+		}
+
+		public String obfuscate(String className) {
+			if (this.obfuscationMapping == null) {
+				return className;
 			}
-			int i = className.lastIndexOf('$');
-			if (i != -1) {
-				return this.deobfuscate(className.substring(0, i)) + className.substring(i);
+			return this.obfuscationMapping.map(className);
+		}
+
+		public String deobfuscate(String className) {
+			if (this.deobfuscationMapping == null) {
+				return className;
 			}
-			return className;
+			return this.deobfuscationMapping.map(className);
 		}
 
 	}
 
 	private static final Map<Configuration, ClassUtil> INSTANCES = new ConcurrentHashMap<>();
-	public static final ClassUtil DEFAULT = ClassUtil.getInstance(Configuration.DEFAULT);
+	// instances of class loader backed configurations, released with the class loader
+	private static final Map<ClassLoader, Map<Configuration, ClassUtil>> CLASS_LOADER_INSTANCES = new WeakHashMap<>();
 	private static final String OBJECT_CLASS_NAME = Object.class.getName().replace('.', '/');
+	private static final long MISSING_CLASS_TTL_NANOS = TimeUnit.MILLISECONDS
+			.toNanos(Long.getLong("meldexun.asm.missingClassTtl", 1000L));
+	public static final ClassUtil DEFAULT = ClassUtil.getInstance(Configuration.DEFAULT);
 	private final Configuration configuration;
-	private final Map<String, ClassInfo> classInfoCache = new ConcurrentHashMap<>();
+	private final NameTable nameTable = new NameTable();
+	private final Symbol objectSymbol = this.nameTable.symbol(OBJECT_CLASS_NAME);
+	private final Ancestors objectAncestors = new Ancestors(new Symbol[] { this.objectSymbol }, 0, 0, false);
+	private final ClassInfoCache classInfoCache = new ClassInfoCache(ClassInfoCache.DEFAULT_MAX_SIZE,
+			ClassInfoCache.DEFAULT_EVICTION_POLICY);
+	private final Map<Path, ClassOrigin> jarOrigins = new ConcurrentHashMap<>();
+	private volatile ClassHierarchyIndex hierarchyIndex;
+	private final CommonSuperClassCache commonSuperClassCache = new CommonSuperClassCache(
+			CommonSuperClassCache.DEFAULT_MAX_SIZE);
+	// bound once instead of on every lookup
+	private final Function<String, ClassInfo> classInfoLoader = this::loadClassInfo;
 
 	private ClassUtil(Configuration configuration) {
 		this.configuration = configuration;
 	}
 
+	/**
+	 * Instances for configurations whose {@link ClassFileSource#classLoader()} is
+	 * not {@code null} are only weakly registered with the class loader and
+	 * released when the class loader is garbage collected.
+	 */
 	public static ClassUtil getInstance(Configuration configuration) {
-		return INSTANCES.computeIfAbsent(configuration, ClassUtil::new);
+		ClassLoader classLoader = configuration.classFileSource.classLoader();
+		if (classLoader == null) {
+			return INSTANCES.computeIfAbsent(configuration, ClassUtil::new);
+		}
+		synchronized (CLASS_LOADER_INSTANCES) {
+			return CLASS_LOADER_INSTANCES.computeIfAbsent(classLoader, k -> new HashMap<>())
+					.computeIfAbsent(configuration, ClassUtil::new);
+		}
+	}
+
+	/**
+	 * Loads a class hierarchy index previously written by
+	 * {@link #saveHierarchyIndex(Path)}. Classes found in the index are not read
+	 * from the class path anymore unless the jar or class file they were read from
+	 * changed or they are found in another file now. Index files can be shared
+	 * between multiple processes.
+	 * 
+	 * @return {@code true} if the index was loaded, {@code false} if the file does
+	 *         not exist, was written with other name mappings or is invalid
+	 */
+	public boolean loadHierarchyIndex(Path file) {
+		try {
+			ClassHierarchyIndex index = ClassHierarchyIndex.load(file, this.nameTable, this.configuration.mappings(),
+					this.configuration.classFileSource.fingerprint());
+			if (index == null) {
+				return false;
+			}
+			this.hierarchyIndex = index;
+			return true;
+		} catch (IOException e) {
+			ASMUtil.LOGGER.warn("Failed loading class hierarchy index {}", file, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Writes all cached class hierarchy information and all still valid entries of
+	 * the currently loaded index to the given file. The file is replaced
+	 * atomically.
+	 */
+	public void saveHierarchyIndex(Path file) throws IOException {
+		Map<Symbol, ClassInfo> classes = new HashMap<>();
+		ClassHierarchyIndex index = this.hierarchyIndex;
+		if (index != null) {
+			for (ClassInfo classInfo : index.validEntries()) {
+				classes.put(classInfo.name, classInfo);
+			}
+		}
+		for (ClassInfo classInfo : this.classInfoCache.values()) {
+			classes.put(classInfo.name, classInfo);
+		}
+		ClassHierarchyIndex.write(file, this.configuration.mappings(), this.configuration.classFileSource.fingerprint(),
+				classes.values());
+	}
+
+	/**
+	 * @return a string which changes whenever the class hierarchy seen by this
+	 *         instance may have changed or {@code null} if that is unknown
+	 */
+	public String hierarchyFingerprint() {
+		return this.configuration.fingerprint();
+	}
+
+	public ClassInfoCache getClassInfoCache() {
+		return this.classInfoCache;
+	}
+
+	public CommonSuperClassCache getCommonSuperClassCache() {
+		return this.commonSuperClassCache;
+	}
+
+	/**
+	 * Clears the {@link #getClassInfoCache() class info cache} and the
+	 * {@link #getCommonSuperClassCache() common super class cache} which is
+	 * derived from it.
+	 */
+	public void clear() {
+		this.classInfoCache.clear();
+		this.commonSuperClassCache.clear();
+	}
+
+	/**
+	 * @return {@code type2} if it is part of the class hierarchy of {@code type1},
+	 *         otherwise the first type in the class hierarchy of {@code type2}
+	 *         which is part of the class hierarchy of {@code type1}
+	 * @see #findInClassHierarchy(String, Predicate)
+	 */
+	public String getCommonSuperClass(String type1, String type2) {
+		String commonSuperClass = this.commonSuperClassCache.get(type1, type2);
+		if (commonSuperClass == null) {
+			HierarchySearch search = HierarchySearch.begin();
+			try {
+				commonSuperClass = this.computeCommonSuperClass(type1, type2, search);
+				if (!search.assumed) {
+					// assumed classes expire, so results derived from them are not cached
+					this.commonSuperClassCache.put(type1, type2, commonSuperClass);
+				}
+			} finally {
+				search.end();
+			}
+		}
+		return commonSuperClass;
 	}
 
+	private String computeCommonSuperClass(String type1, String type2, HierarchySearch search) {
+		Symbol symbol2 = this.nameTable.symbol(type2);
+		search.type = symbol2;
+		if (this.findInClassHierarchy(this.nameTable.symbol(type1), search) != null) {
+			return type2;
+		}
+		// the hierarchy of type1 is resolved completely now
+		search.type = null;
+		search.ancestors = this.getAncestors(type1);
+		Symbol commonSuperClass = this.findInClassHierarchy(symbol2, search);
+		if (commonSuperClass == null) {
+			throw new IllegalStateException();
+		}
+		return commonSuperClass.name;
+	}
+
+	/**
+	 * @return {@code true} if {@code subType} is {@code type} or a class or
+	 *         interface extending or implementing {@code type}
+	 */
+	public boolean isAssignableFrom(String type, String subType) {
+		HierarchySearch search = HierarchySearch.begin();
+		try {
+			search.type = this.nameTable.symbol(type);
+			return this.findInClassHierarchy(this.nameTable.symbol(subType), search) != null;
+		} finally {
+			search.end();
+		}
+	}
+
+	/**
+	 * @return all super classes and interfaces of the class in the order in which
+	 *         {@link #findInClassHierarchy(String, Predicate)} tests them
+	 */
+	public List<String> getAllSuperTypes(String className) {
+		Symbol[] types = this.getAncestors(className).types;
+		String[] names = new String[types.length - 1];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = types[i + 1].name;
+		}
+		return Collections.unmodifiableList(Arrays.asList(names));
+	}
+
+	/**
+	 * Tests the class, its super classes, then their interfaces depth first and
+	 * finally {@link Object}. Every type is tested once and before it is loaded,
+	 * super types after the accepted type are not loaded.
+	 * 
+	 * @return the first type accepted by the filter or {@code null}
+	 */
 	public String findInClassHierarchy(String className, Predicate<String> filter) {
-		String r1 = this.findClass(className, filter);
-		if (r1 != null) {
-			return r1;
+		HierarchySearch search = HierarchySearch.begin();
+		try {
+			search.filter = t -> filter.test(t.name);
+			Symbol type = this.findInClassHierarchy(this.nameTable.symbol(className), search);
+			return type != null ? type.name : null;
+		} finally {
+			search.end();
 		}
-		String r2 = this.findInterface(className, filter);
-		if (r2 != null) {
-			return r2;
+	}
+
+	private Symbol findInClassHierarchy(Symbol symbol, HierarchySearch search) {
+		if (search.test(symbol)) {
+			return symbol;
 		}
-		if (filter.test(OBJECT_CLASS_NAME)) {
-			return OBJECT_CLASS_NAME;
+		if (symbol == this.objectSymbol) {
+			return null;
 		}
-		return null;
+		ClassInfo classInfo = this.getClassInfoCached(symbol.name);
+		Ancestors ancestors = classInfo.ancestors;
+		if (ancestors != null) {
+			search.assumed |= ancestors.assumed;
+			for (int i = 1; i < ancestors.types.length; i++) {
+				if (search.test(ancestors.types[i])) {
+					return ancestors.types[i];
+				}
+			}
+			return null;
+		}
+		search.assumed |= classInfo.assumed;
+		Symbol type = this.searchSuperTypes(classInfo, search);
+		if (type == null) {
+			// memoized once the whole hierarchy could be resolved
+			this.getAncestors(classInfo);
+		}
+		return type;
+	}
+
+	/**
+	 * Same order as {@link #computeAncestors(ClassInfo)} but loads super types
+	 * only until one is accepted. Uses the ancestors of super types if they are
+	 * memoized already.
+	 */
+	private Symbol searchSuperTypes(ClassInfo classInfo, HierarchySearch search) {
+		search.reset();
+		search.addClass(classInfo);
+		Ancestors superAncestors = null;
+		ClassInfo superClassInfo = classInfo;
+		while (superClassInfo.superClass != null && superClassInfo.superClass != this.objectSymbol) {
+			if (search.test(superClassInfo.superClass)) {
+				return superClassInfo.superClass;
+			}
+			superClassInfo = this.getClassInfoCached(superClassInfo.superClass.name);
+			superAncestors = superClassInfo.ancestors;
+			if (superAncestors != null) {
+				search.assumed |= superAncestors.assumed;
+				for (int i = 1; i < superAncestors.interfaceStart; i++) {
+					if (search.test(superAncestors.types[i])) {
+						return superAncestors.types[i];
+					}
+				}
+				break;
+			}
+			search.assumed |= superClassInfo.assumed;
+			search.addClass(superClassInfo);
+		}
+
+		for (int i = 0; i < search.classCount; i++) {
+			Symbol type = this.searchInterfaces(search.classes[i], search);
+			if (type != null) {
+				return type;
+			}
+		}
+		if (superAncestors != null) {
+			Symbol type = searchUnvisited(superAncestors, search);
+			if (type != null) {
+				return type;
+			}
+		}
+		return search.test(this.objectSymbol) ? this.objectSymbol : null;
 	}
 
-	private String findClass(String className, Predicate<String> filter) {
-		String s = className;
-		while (s != null && !s.equals(OBJECT_CLASS_NAME)) {
-			if (filter.test(s)) {
-				return s;
+	private Symbol searchInterfaces(ClassInfo classInfo, HierarchySearch search) {
+		SymbolList visited = search.visited;
+		for (Symbol interfaceSymbol : classInfo.interfaces) {
+			if (visited.contains(interfaceSymbol)) {
+				continue;
+			}
+			visited.add(interfaceSymbol);
+			if (search.test(interfaceSymbol)) {
+				return interfaceSymbol;
+			}
+			ClassInfo interfaceInfo = this.getClassInfoCached(interfaceSymbol.name);
+			Ancestors ancestors = interfaceInfo.ancestors;
+			Symbol type;
+			if (ancestors != null) {
+				search.assumed |= ancestors.assumed;
+				type = searchUnvisited(ancestors, search);
+			} else {
+				search.assumed |= interfaceInfo.assumed;
+				type = this.searchInterfaces(interfaceInfo, search);
+			}
+			if (type != null) {
+				return type;
 			}
-			s = this.getClassInfoCached(s).superClass;
 		}
 		return null;
 	}
 
-	private String findInterface(String className, Predicate<String> filter) {
-		String s = className;
-		while (s != null && !s.equals(OBJECT_CLASS_NAME)) {
-			ClassInfo c = this.getClassInfoCached(s);
-			for (String i : c.interfaces) {
-				if (filter.test(i)) {
-					return i;
-				}
-				String r = this.findInterface(i, filter);
-				if (r != null) {
-					return r;
+	/**
+	 * Tests the interfaces of the ancestors which were not visited yet.
+	 */
+	private static Symbol searchUnvisited(Ancestors ancestors, HierarchySearch search) {
+		SymbolList visited = search.visited;
+		for (int i = ancestors.interfaceStart; i < ancestors.interfaceEnd; i++) {
+			Symbol type = ancestors.types[i];
+			if (!visited.contains(type)) {
+				visited.add(type);
+				if (search.test(type)) {
+					return type;
 				}
 			}
-			s = c.superClass;
 		}
 		return null;
 	}
 
+	private Ancestors getAncestors(String className) {
+		if (className.equals(OBJECT_CLASS_NAME)) {
+			return this.objectAncestors;
+		}
+		return this.getAncestors(this.getClassInfoCached(className));
+	}
+
+	private Ancestors getAncestors(ClassInfo classInfo) {
+		Ancestors ancestors = classInfo.ancestors;
+		if (ancestors == null) {
+			ancestors = this.computeAncestors(classInfo);
+			classInfo.ancestors = ancestors;
+		}
+		return ancestors;
+	}
+
+	private Ancestors computeAncestors(ClassInfo classInfo) {
+		if (classInfo.name == this.objectSymbol) {
+			return this.objectAncestors;
+		}
+		Ancestors superAncestors = null;
+		if (classInfo.superClass != null && classInfo.superClass != this.objectSymbol) {
+			superAncestors = this.getAncestors(classInfo.superClass.name);
+		}
+		boolean assumed = classInfo.assumed;
+
+		SymbolList types = new SymbolList();
+		types.add(classInfo.name);
+		if (superAncestors != null) {
+			assumed |= superAncestors.assumed;
+			types.addAll(superAncestors.types, 0, superAncestors.interfaceStart, 0);
+		}
+
+		// same order as a depth first search through the interfaces of each class
+		int interfaceStart = types.size;
+		for (Symbol interfaceSymbol : classInfo.interfaces) {
+			Ancestors interfaceAncestors = this.getAncestors(interfaceSymbol.name);
+			assumed |= interfaceAncestors.assumed;
+			types.addDistinct(interfaceSymbol, interfaceStart);
+			types.addAll(interfaceAncestors.types, interfaceAncestors.interfaceStart, interfaceAncestors.interfaceEnd,
+					interfaceStart);
+		}
+		if (superAncestors != null) {
+			types.addAll(superAncestors.types, superAncestors.interfaceStart, superAncestors.interfaceEnd,
+					interfaceStart);
+		}
+		int interfaceEnd = types.size;
+		types.add(this.objectSymbol);
+		return new Ancestors(types.toArray(), interfaceStart, interfaceEnd, assumed);
+	}
+
 	private ClassInfo getClassInfoCached(String className) {
-		return this.classInfoCache.computeIfAbsent(className, k -> {
-			return ClassUtil.getClassInfo(this.configuration.classLoader, this.configuration.obfuscate(k),
-					this.configuration::deobfuscate);
+		ClassInfo classInfo = this.classInfoCache.computeIfAbsent(className, this.classInfoLoader);
+		if (classInfo.isExpired()) {
+			// the class may have become available, e.g. by adding a jar to the class loader
+			this.classInfoCache.remove(className, classInfo);
+			classInfo = this.classInfoCache.computeIfAbsent(className, this.classInfoLoader);
+		}
+		if (classInfo.missing) {
+			throw new MissingClassException(className);
+		}
+		return classInfo;
+	}
+
+	private ClassInfo loadClassInfo(String className) {
+		ClassInfo classInfo = this.findClassInfo(className);
+		return classInfo != null ? classInfo : this.getMissingClassInfo(className);
+	}
+
+	/**
+	 * Missing classes are not passed to the {@link MissingClassPolicy}. Their
+	 * entries are expired already, so they are loaded again when requested.
+	 */
+	private ClassInfo prefetchClassInfo(String className) {
+		ClassInfo classInfo = this.findClassInfo(className);
+		return classInfo != null ? classInfo : new ClassInfo(this.nameTable.symbol(className), true);
+	}
+
+	/**
+	 * @return the class info or {@code null} if the class can't be found
+	 */
+	private ClassInfo findClassInfo(String className) {
+		ClassHierarchyIndex index = this.hierarchyIndex;
+		if (index != null) {
+			ClassInfo indexedClassInfo = index.get(className);
+			if (indexedClassInfo != null
+					&& (index.classFilesUnchanged() || this.isLocatedAt(className, indexedClassInfo.origin))) {
+				return indexedClassInfo;
+			}
+		}
+		ClassInfo loadedClassInfo = this.getClassInfo(this.configuration.classFileSource,
+				this.configuration.obfuscate(className), this.configuration::deobfuscate);
+		if (loadedClassInfo != null && ClassInfoPrefetcher.ENABLED) {
+			this.prefetchSuperTypes(loadedClassInfo);
+		}
+		return loadedClassInfo;
+	}
+
+	/**
+	 * @return {@code true} if the class would still be read from the origin, i.e.
+	 *         it was neither moved nor shadowed by another class
+	 */
+	private boolean isLocatedAt(String className, ClassOrigin origin) {
+		Path location;
+		try {
+			location = this.configuration.classFileSource.location(this.configuration.obfuscate(className));
+		} catch (IOException e) {
+			return false;
+		}
+		return location != null && location.toString().equals(origin.path);
+	}
+
+	/**
+	 * Loads the direct super class and interfaces in the background. Their super
+	 * types are prefetched once they are loaded, so the whole hierarchy is loaded
+	 * while the requesting thread resolves it.
+	 */
+	private void prefetchSuperTypes(ClassInfo classInfo) {
+		if (classInfo.superClass != null) {
+			this.prefetch(classInfo.superClass);
+		}
+		for (Symbol interfaceSymbol : classInfo.interfaces) {
+			this.prefetch(interfaceSymbol);
+		}
+	}
+
+	private void prefetch(Symbol symbol) {
+		if (symbol == this.objectSymbol) {
+			// never loaded to resolve a hierarchy
+			return;
+		}
+		String className = symbol.name;
+		if (this.classInfoCache.contains(className)) {
+			return;
+		}
+		ClassInfoPrefetcher.submit(() -> {
+			ClassInfo classInfo;
+			try {
+				classInfo = this.classInfoCache.computeIfAbsent(className, this::prefetchClassInfo);
+			} catch (RuntimeException e) {
+				// reported when the class is requested
+				return;
+			}
+			if (classInfo.missing) {
+				this.classInfoCache.remove(className, classInfo);
+			}
 		});
 	}
 
-	private static ClassInfo getClassInfo(ClassLoader classLoader, String className,
+	private ClassInfo getMissingClassInfo(String className) {
+		MissingClassPolicy.AssumedClass assumedClass = this.configuration.missingClassPolicy.resolve(className);
+		if (assumedClass == null) {
+			return new ClassInfo(this.nameTable.symbol(className), false);
+		}
+		ASMUtil.LOGGER.warn("Can't find class resource {}, assuming it extends {}", className, assumedClass.superName);
+		Symbol[] interfaces = assumedClass.interfaces.length != 0 ? new Symbol[assumedClass.interfaces.length]
+				: ClassInfo.NO_INTERFACES;
+		for (int i = 0; i < interfaces.length; i++) {
+			interfaces[i] = this.nameTable.symbol(assumedClass.interfaces[i]);
+		}
+		return new ClassInfo(assumedClass.access, this.nameTable.symbol(className),
+				this.nameTable.symbol(assumedClass.superName), interfaces, null, false, true, false);
+	}
+
+	/**
+	 * @return the class info or {@code null} if the class can't be found
+	 */
+	private ClassInfo getClassInfo(ClassFileSource classFileSource, String className,
 			Function<String, String> deobfuscationFunction) {
 		if (className.startsWith("[")) {
-			return new ClassInfo(Opcodes.ACC_PUBLIC, className, OBJECT_CLASS_NAME, new String[0]);
-		}
-		URL url = classLoader.getResource(className + ".class");
-		if (url == null) {
-			throw new MissingResourceException("Can't find class resource", className, "");
-		}
-		try (DataInputStream in = new DataInputStream(new BufferedInputStream(IOUtil.openStream(url)))) {
-			IOUtil.skip(in, 4); // magic
-			IOUtil.skip(in, 2); // minor class version
-			IOUtil.skip(in, 2); // major class version
-
-			// read constant pool
-			FilteredConstantPool constantPool = FilteredConstantPool.read(in, (in1, type) -> {
-				switch (type) {
-				case 7: // Class
-					return in1.readUnsignedShort();
-				case 1: // Utf8
-					return IOUtil.read(in1, in1.readUnsignedShort());
-				case 8: // String
-				case 16: // MethodType
-					IOUtil.skip(in1, 2);
-					return null;
-				case 15: // MethodHandle
-					IOUtil.skip(in1, 3);
-					return null;
-				case 3: // Int
-				case 4: // Float
-				case 9: // Fieldref
-				case 10: // Methodref
-				case 11: // InterfaceMethodref
-				case 12: // NameAndType
-				case 18: // InvokeDynamic
-					IOUtil.skip(in1, 4);
-					return null;
-				case 5: // Long
-				case 6: // Double
-					IOUtil.skip(in1, 8);
-					return null;
-				default:
-					throw new IllegalStateException();
-				}
-			});
-
-			return ClassInfo.read(in, constantPool, deobfuscationFunction);
-		} catch (IOException | URISyntaxException e) {
+			return new ClassInfo(Opcodes.ACC_PUBLIC, this.nameTable.symbol(className), this.objectSymbol,
+					ClassInfo.NO_INTERFACES, null);
+		}
+		TransformEvents.ResourceLoadEvent event = TransformEvents.INSTANCE.beginResourceLoad();
+		ClassFileSource.ClassFile classFile;
+		try {
+			classFile = classFileSource.find(className);
+		} catch (IOException e) {
 			throw new ClassTransformException(e);
 		}
+		if (classFile == null) {
+			return null;
+		}
+		ClassInfo classInfo = ClassInfo.read(classFile.buffer(), deobfuscationFunction,
+				this.getOrigin(classFile.location()), this.nameTable);
+		if (event != null) {
+			event.end(className, Objects.toString(classFile.location(), null), classFile.buffer().remaining());
+		}
+		return classInfo;
+	}
+
+	private ClassOrigin getOrigin(Path file) {
+		if (file == null) {
+			return null;
+		}
+		try {
+			if (file.getFileName().toString().endsWith(".class")) {
+				return ClassOrigin.of(file);
+			}
+			ClassOrigin origin = this.jarOrigins.get(file);
+			if (origin == null) {
+				origin = ClassOrigin.of(file);
+				this.jarOrigins.put(file, origin);
+			}
+			return origin;
+		} catch (IOException e) {
+			// class can still be loaded but won't be indexed
+			return null;
+		}
 	}
 
-	static class ClassInfo {
+	/**
+	 * Class names are interned by the {@link NameTable} of the {@link ClassUtil}
+	 * instance.
+	 */
+	static final class ClassInfo {
 
+		static final Symbol[] NO_INTERFACES = new Symbol[0];
 		final int access;
-		final String name;
-		final String superClass;
-		final String[] interfaces;
+		final Symbol name;
+		/**
+		 * {@code null} if the class has no super class
+		 */
+		final Symbol superClass;
+		final Symbol[] interfaces;
+		final ClassOrigin origin;
+		/**
+		 * {@code true} if this is the negative entry of a missing class
+		 */
+		final boolean missing;
+		/**
+		 * {@code true} if the hierarchy of the missing class was assumed by the
+		 * {@link MissingClassPolicy}
+		 */
+		final boolean assumed;
+		private final long missingSince;
+		private final boolean prefetched;
+		volatile Ancestors ancestors;
 
-		private ClassInfo(int access, String name, String superClass, String[] interfaces) {
+		ClassInfo(int access, Symbol name, Symbol superClass, Symbol[] interfaces, ClassOrigin origin) {
+			this(access, name, superClass, interfaces, origin, false, false, false);
+		}
+
+		/**
+		 * Creates the negative entry of a missing class.
+		 * 
+		 * @param prefetched {@code true} if the class was found missing by a
+		 *                   prefetch, the entry is expired already
+		 */
+		ClassInfo(Symbol name, boolean prefetched) {
+			this(0, name, null, NO_INTERFACES, null, true, false, prefetched);
+		}
+
+		private ClassInfo(int access, Symbol name, Symbol superClass, Symbol[] interfaces, ClassOrigin origin,
+				boolean missing, boolean assumed, boolean prefetched) {
 			this.access = access;
 			this.name = name;
 			this.superClass = superClass;
 			this.interfaces = interfaces;
+			this.origin = origin;
+			this.missing = missing;
+			this.assumed = assumed;
+			this.missingSince = missing || assumed ? System.nanoTime() : 0L;
+			this.prefetched = prefetched;
+		}
+
+		/**
+		 * Entries of missing classes expire after
+		 * {@code meldexun.asm.missingClassTtl} milliseconds.
+		 */
+		boolean isExpired() {
+			return this.prefetched || (this.missing || this.assumed)
+					&& System.nanoTime() - this.missingSince > MISSING_CLASS_TTL_NANOS;
 		}
 
-		static ClassInfo read(DataInput in, FilteredConstantPool constantPool,
-				Function<String, String> deobfuscationFunction) throws IOException {
-			int access = in.readUnsignedShort();
-			String name = deobfuscationFunction.apply(constantPool.getClass(in.readUnsignedShort()));
-			String superName = deobfuscationFunction.apply(constantPool.getClass(in.readUnsignedShort()));
-			String[] interfaces = new String[in.readUnsignedShort()];
+		static ClassInfo read(ByteBuffer buffer, Function<String, String> deobfuscationFunction,
+				ClassOrigin origin, NameTable nameTable) {
+			ClassHeaderReader reader = new ClassHeaderReader(buffer);
+			int access = reader.access();
+			Symbol name = nameTable.symbol(deobfuscationFunction.apply(reader.name()));
+			String superName = reader.superName();
+			Symbol superClass = superName != null ? nameTable.symbol(deobfuscationFunction.apply(superName)) : null;
+			String[] interfaceNames = reader.interfaces();
+			Symbol[] interfaces = interfaceNames.length != 0 ? new Symbol[interfaceNames.length] : NO_INTERFACES;
 			for (int i = 0; i < interfaces.length; i++) {
-				interfaces[i] = deobfuscationFunction.apply(constantPool.getClass(in.readUnsignedShort()));
+				interfaces[i] = nameTable.symbol(deobfuscationFunction.apply(interfaceNames[i]));
+			}
+			return new ClassInfo(access, name, superClass, interfaces, origin);
+		}
+
+	}
+
+	/**
+	 * Linearized class hierarchy of a class: the class and its super classes, the
+	 * interfaces they implement and {@link Object}. Each type occurs once.
+	 */
+	static final class Ancestors {
+
+		final Symbol[] types;
+		final int interfaceStart;
+		final int interfaceEnd;
+		/**
+		 * {@code true} if the hierarchy of a type was assumed by the
+		 * {@link MissingClassPolicy}
+		 */
+		final boolean assumed;
+		private final int[] sortedIds;
+
+		Ancestors(Symbol[] types, int interfaceStart, int interfaceEnd, boolean assumed) {
+			this.types = types;
+			this.interfaceStart = interfaceStart;
+			this.interfaceEnd = interfaceEnd;
+			this.assumed = assumed;
+			this.sortedIds = new int[types.length];
+			for (int i = 0; i < types.length; i++) {
+				this.sortedIds[i] = types[i].id;
+			}
+			Arrays.sort(this.sortedIds);
+		}
+
+		boolean contains(Symbol symbol) {
+			return symbol != null && Arrays.binarySearch(this.sortedIds, symbol.id) >= 0;
+		}
+
+	}
+
+	/**
+	 * Thrown for every request of a cached missing class, so the stack trace is
+	 * not filled in.
+	 */
+	private static final class MissingClassException extends MissingResourceException {
+
+		private static final long serialVersionUID = 4163307473427153352L;
+
+		MissingClassException(String className) {
+			super("Can't find class resource", className, "");
+		}
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+
+	}
+
+	/**
+	 * State of a class hierarchy search. Reused by the searches of a thread, so
+	 * resolving a common super class doesn't allocate.
+	 */
+	private static final class HierarchySearch {
+
+		private static final ThreadLocal<HierarchySearch> CURRENT = ThreadLocal.withInitial(HierarchySearch::new);
+		final SymbolList visited = new SymbolList();
+		ClassInfo[] classes = new ClassInfo[8];
+		int classCount;
+		/**
+		 * Accepted are the type if set, otherwise the ancestors if set, otherwise
+		 * the types accepted by the filter.
+		 */
+		Symbol type;
+		Ancestors ancestors;
+		Predicate<Symbol> filter;
+		/**
+		 * {@code true} if the hierarchy of a visited type was assumed by the
+		 * {@link MissingClassPolicy}
+		 */
+		boolean assumed;
+		private boolean active;
+
+		static HierarchySearch begin() {
+			HierarchySearch search = CURRENT.get();
+			if (search.active) {
+				// nested, e.g. by a transformer of a class loaded by the outer search
+				search = new HierarchySearch();
+			}
+			search.active = true;
+			return search;
+		}
+
+		boolean test(Symbol symbol) {
+			if (this.type != null) {
+				return symbol == this.type;
+			}
+			if (this.ancestors != null) {
+				return this.ancestors.contains(symbol);
+			}
+			return this.filter.test(symbol);
+		}
+
+		void addClass(ClassInfo classInfo) {
+			if (this.classCount == this.classes.length) {
+				this.classes = Arrays.copyOf(this.classes, this.classCount * 2);
 			}
-			return new ClassInfo(access, name, superName, interfaces);
+			this.classes[this.classCount++] = classInfo;
+		}
+
+		void reset() {
+			Arrays.fill(this.classes, 0, this.classCount, null);
+			this.classCount = 0;
+			this.visited.size = 0;
+		}
+
+		void end() {
+			this.reset();
+			this.type = null;
+			this.ancestors = null;
+			this.filter = null;
+			this.assumed = false;
+			this.active = false;
+		}
+
+	}
+
+	private static final class SymbolList {
+
+		Symbol[] values = new Symbol[16];
+		int size;
+
+		void add(Symbol value) {
+			if (this.size == this.values.length) {
+				this.values = Arrays.copyOf(this.values, this.size * 2);
+			}
+			this.values[this.size++] = value;
+		}
+
+		/**
+		 * Adds the values which are not contained in this list after
+		 * {@code distinctFrom} yet.
+		 */
+		void addAll(Symbol[] values, int start, int end, int distinctFrom) {
+			for (int i = start; i < end; i++) {
+				this.addDistinct(values[i], distinctFrom);
+			}
+		}
+
+		void addDistinct(Symbol value, int distinctFrom) {
+			for (int i = distinctFrom; i < this.size; i++) {
+				if (this.values[i] == value) {
+					return;
+				}
+			}
+			this.add(value);
+		}
+
+		boolean contains(Symbol value) {
+			for (int i = 0; i < this.size; i++) {
+				if (this.values[i] == value) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		Symbol[] toArray() {
+			return Arrays.copyOf(this.values, this.size);
 		}
 
 	}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.reader;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the common super class of pairs of types. Entries are stored in nested
+ * maps so that lookups don't allocate a key. Once the cache is full it is
+ * cleared.
+ */
+public final class CommonSuperClassCache {
+
+	static final int DEFAULT_MAX_SIZE = Integer.getInteger("meldexun.asm.commonSuperClassCacheSize", 16384);
+
+	private final Map<String, Map<String, String>> cache = new ConcurrentHashMap<>();
+	private final int maxSize;
+	private final AtomicInteger size = new AtomicInteger();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder clears = new LongAdder();
+
+	CommonSuperClassCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @return the cached common super class or {@code null}
+	 */
+	String get(String type1, String type2) {
+		Map<String, String> map = this.cache.get(type1);
+		String commonSuperClass = map != null ? map.get(type2) : null;
+		if (commonSuperClass != null) {
+			this.hits.increment();
+		} else {
+			this.misses.increment();
+		}
+		return commonSuperClass;
+	}
+
+	void put(String type1, String type2, String commonSuperClass) {
+		if (this.cache.computeIfAbsent(type1, k -> new ConcurrentHashMap<>()).putIfAbsent(type2,
+				commonSuperClass) != null) {
+			// computed concurrently by another thread
+			return;
+		}
+		if (this.size.incrementAndGet() > this.maxSize) {
+			this.clear();
+			this.clears.increment();
+		}
+	}
+
+	public void clear() {
+		this.cache.clear();
+		this.size.set(0);
+	}
+
+	public int size() {
+		return this.size.get();
+	}
+
+	public int maxSize() {
+		return this.maxSize;
+	}
+
+	public long hits() {
+		return this.hits.sum();
+	}
+
+	public long misses() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * @return the number of times the cache was cleared because it was full
+	 */
+	public long clears() {
+		return this.clears.sum();
+	}
+
+	public double hitRate() {
+		long hits = this.hits.sum();
+		long total = hits + this.misses.sum();
+		return total != 0 ? (double) hits / total : 0.0D;
+	}
+
+}
@@ -5,36 +5,112 @@
 
 package meldexun.asmutil2.reader;
 
-import java.io.DataInput;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 
 class IOUtil {
 
-	static InputStream openStream(URL url) throws IOException, URISyntaxException {
-		if (url == null) {
-			return null;
-		}
+	/**
+	 * Reads the whole resource into a heap buffer.
+	 */
+	static ByteBuffer read(URL url) throws IOException, URISyntaxException {
 		if (url.getProtocol().equals("file")) {
-			return Files.newInputStream(Paths.get(url.toURI()));
+			return ByteBuffer.wrap(Files.readAllBytes(Paths.get(url.toURI())));
+		}
+		try (InputStream in = url.openStream()) {
+			return read(in, -1);
+		}
+	}
+
+	/**
+	 * Reads the remaining bytes of the stream into a heap buffer.
+	 * 
+	 * @param size the expected number of bytes or {@code -1} if unknown
+	 */
+	static ByteBuffer read(InputStream in, int size) throws IOException {
+		// one more byte to detect the end of the stream without growing the array
+		byte[] bytes = new byte[size >= 0 ? size + 1 : 4096];
+		int length = 0;
+		int n;
+		while ((n = in.read(bytes, length, bytes.length - length)) != -1) {
+			length += n;
+			if (length == bytes.length) {
+				bytes = Arrays.copyOf(bytes, bytes.length << 1);
+			}
+		}
+		return ByteBuffer.wrap(bytes, 0, length);
+	}
+
+	/**
+	 * Decodes a modified UTF-8 string as written by
+	 * {@link java.io.DataOutput#writeUTF(String)} without changing the position of
+	 * the buffer.
+	 */
+	static String readUTF(ByteBuffer buffer, int offset, int length) {
+		char[] chars = new char[length];
+		int charCount = 0;
+		int end = offset + length;
+		int i = offset;
+		while (i < end) {
+			int b = buffer.get(i++) & 0xFF;
+			if (b < 0x80) {
+				chars[charCount++] = (char) b;
+			} else if (b < 0xE0) {
+				chars[charCount++] = (char) (((b & 0x1F) << 6) | (buffer.get(i++) & 0x3F));
+			} else {
+				chars[charCount++] = (char) (((b & 0x0F) << 12) | ((buffer.get(i++) & 0x3F) << 6)
+						| (buffer.get(i++) & 0x3F));
+			}
+		}
+		return new String(chars, 0, charCount);
+	}
+
+	/**
+	 * Compares a modified UTF-8 string with the given string without decoding it.
+	 */
+	static boolean equalsUTF(ByteBuffer buffer, int offset, int length, String s) {
+		int end = offset + length;
+		int i = offset;
+		int charIndex = 0;
+		while (i < end) {
+			int b = buffer.get(i++) & 0xFF;
+			char c;
+			if (b < 0x80) {
+				c = (char) b;
+			} else if (b < 0xE0) {
+				c = (char) (((b & 0x1F) << 6) | (buffer.get(i++) & 0x3F));
+			} else {
+				c = (char) (((b & 0x0F) << 12) | ((buffer.get(i++) & 0x3F) << 6) | (buffer.get(i++) & 0x3F));
+			}
+			if (charIndex == s.length() || s.charAt(charIndex++) != c) {
+				return false;
+			}
 		}
-		return url.openStream();
+		return charIndex == s.length();
 	}
 
-	static void skip(DataInput in, int n) throws IOException {
-		for (int i = 0; i < n; i++) {
-			in.readByte();
+	static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
 		}
 	}
 
-	static byte[] read(DataInput in, int n) throws IOException {
-		byte[] bytes = new byte[n];
-		in.readFully(bytes);
-		return bytes;
+	static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
 	}
 
 }
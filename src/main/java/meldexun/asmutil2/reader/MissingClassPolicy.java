@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.reader;
+
+import java.util.Locale;
+import java.util.MissingResourceException;
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.objectweb.asm.Opcodes;
+
+import meldexun.asmutil2.ASMUtil;
+
+/**
+ * Decides how {@link ClassUtil} handles classes whose class file can't be
+ * found. The default is selected by {@code meldexun.asm.missingClassPolicy}
+ * ({@code throw} or {@code object}), missing classes are cached for
+ * {@code meldexun.asm.missingClassTtl} milliseconds.
+ */
+@FunctionalInterface
+public interface MissingClassPolicy {
+
+	/**
+	 * Throws a {@link MissingResourceException} for missing classes.
+	 */
+	MissingClassPolicy THROW = className -> null;
+	/**
+	 * Assumes missing classes are public classes directly extending
+	 * {@link Object} without interfaces.
+	 */
+	MissingClassPolicy ASSUME_OBJECT = className -> AssumedClass.OBJECT_SUBCLASS;
+
+	/**
+	 * @param className the internal, deobfuscated name of the missing class
+	 * @return the assumed hierarchy of the class or {@code null} to throw a
+	 *         {@link MissingResourceException}
+	 */
+	AssumedClass resolve(String className);
+
+	default MissingClassPolicy orElse(MissingClassPolicy other) {
+		Objects.requireNonNull(other);
+		return className -> {
+			AssumedClass assumedClass = this.resolve(className);
+			return assumedClass != null ? assumedClass : other.resolve(className);
+		};
+	}
+
+	/**
+	 * @param superClassProvider returns the internal name of the super class of a
+	 *                           missing class or {@code null} if it is unknown
+	 * @return a policy which assumes missing classes are public classes extending
+	 *         the provided super class
+	 */
+	static MissingClassPolicy of(Function<String, String> superClassProvider) {
+		Objects.requireNonNull(superClassProvider);
+		return className -> {
+			String superName = superClassProvider.apply(className);
+			return superName != null ? new AssumedClass(Opcodes.ACC_PUBLIC, superName) : null;
+		};
+	}
+
+	static MissingClassPolicy fromSystemProperty() {
+		String policy = System.getProperty("meldexun.asm.missingClassPolicy", "throw");
+		switch (policy.toLowerCase(Locale.ROOT)) {
+		case "throw":
+			return THROW;
+		case "object":
+			return ASSUME_OBJECT;
+		default:
+			ASMUtil.LOGGER.warn("Unknown missing class policy {}, using throw", policy);
+			return THROW;
+		}
+	}
+
+	final class AssumedClass {
+
+		static final AssumedClass OBJECT_SUBCLASS = new AssumedClass(Opcodes.ACC_PUBLIC, "java/lang/Object");
+
+		final int access;
+		final String superName;
+		final String[] interfaces;
+
+		/**
+		 * @param superName  the internal name of the super class
+		 * @param interfaces the internal names of the interfaces
+		 */
+		public AssumedClass(int access, String superName, String... interfaces) {
+			this.access = access;
+			this.superName = Objects.requireNonNull(superName);
+			this.interfaces = interfaces.clone();
+		}
+
+	}
+
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.reader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable mapping of internal class names. Nested classes which are not
+ * mapped themselves are mapped by their outer class, e.g. {@code a$1} to
+ * {@code net/minecraft/A$1} if {@code a} is mapped to {@code net/minecraft/A}.
+ */
+public final class NameMapping {
+
+	private final String[] keys;
+	private final String[] values;
+	private final int size;
+	private final Map<String, String> nestedClassCache = new ConcurrentHashMap<>();
+	private int hashCode;
+
+	private NameMapping(String[] keys, String[] values, int size) {
+		this.keys = keys;
+		this.values = values;
+		this.size = size;
+	}
+
+	public static NameMapping of(Map<String, String> map) {
+		Builder builder = new Builder(map.size());
+		map.forEach(builder::put);
+		return builder.build();
+	}
+
+	/**
+	 * @return the mapped name or the given name if neither the class nor one of
+	 *         its outer classes is mapped
+	 */
+	public String map(String className) {
+		if (className == null || this.size == 0) {
+			return className;
+		}
+		String mappedName = this.get(className, className.length());
+		if (mappedName != null) {
+			return mappedName;
+		}
+		int i = className.lastIndexOf('$');
+		if (i == -1) {
+			return className;
+		}
+		mappedName = this.nestedClassCache.get(className);
+		if (mappedName != null) {
+			return mappedName;
+		}
+		mappedName = className;
+		for (; i != -1; i = className.lastIndexOf('$', i - 1)) {
+			String mappedOuterName = this.get(className, i);
+			if (mappedOuterName != null) {
+				mappedName = mappedOuterName.concat(className.substring(i));
+				break;
+			}
+		}
+		this.nestedClassCache.put(className, mappedName);
+		return mappedName;
+	}
+
+	/**
+	 * @return the mapped name of the prefix of the given length or {@code null}
+	 */
+	private String get(String s, int length) {
+		int mask = this.keys.length - 1;
+		for (int i = hash(s, length) & mask;; i = (i + 1) & mask) {
+			String key = this.keys[i];
+			if (key == null) {
+				return null;
+			}
+			if (key.length() == length && key.regionMatches(0, s, 0, length)) {
+				return this.values[i];
+			}
+		}
+	}
+
+	private static int hash(String s, int length) {
+		int h = 0;
+		for (int i = 0; i < length; i++) {
+			h = 31 * h + s.charAt(i);
+		}
+		return h ^ (h >>> 16);
+	}
+
+	public NameMapping inverse() {
+		Builder builder = new Builder(this.size);
+		for (int i = 0; i < this.keys.length; i++) {
+			if (this.keys[i] != null) {
+				builder.put(this.values[i], this.keys[i]);
+			}
+		}
+		return builder.build();
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof NameMapping)) {
+			return false;
+		}
+		NameMapping other = (NameMapping) obj;
+		if (this.size != other.size || this.hashCode() != other.hashCode()) {
+			return false;
+		}
+		for (int i = 0; i < this.keys.length; i++) {
+			if (this.keys[i] != null && !this.values[i].equals(other.get(this.keys[i], this.keys[i].length()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int h = this.hashCode;
+		if (h == 0) {
+			for (int i = 0; i < this.keys.length; i++) {
+				if (this.keys[i] != null) {
+					h += this.keys[i].hashCode() ^ this.values[i].hashCode();
+				}
+			}
+			this.hashCode = h;
+		}
+		return h;
+	}
+
+	/**
+	 * Reads the class mappings of an SRG file ({@code CL: obf deobf}).
+	 */
+	/**
+	 * Adds the entries to the digest independent of their insertion order.
+	 */
+	void digest(MessageDigest digest) {
+		String[] keys = new String[this.size];
+		int n = 0;
+		for (String key : this.keys) {
+			if (key != null) {
+				keys[n++] = key;
+			}
+		}
+		Arrays.sort(keys);
+		for (String key : keys) {
+			digest.update(key.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(this.get(key, key.length()).getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+		}
+	}
+
+	public static NameMapping readSrg(Reader reader) throws IOException {
+		Builder builder = new Builder(1024);
+		BufferedReader in = new BufferedReader(reader);
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (line.startsWith("CL:")) {
+				String[] parts = line.trim().split("\\s+");
+				builder.put(parts[1], parts[2]);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Reads the class mappings of a TSRG file. For TSRG v2 files the first two
+	 * namespaces are used.
+	 */
+	public static NameMapping readTsrg(Reader reader) throws IOException {
+		Builder builder = new Builder(1024);
+		BufferedReader in = new BufferedReader(reader);
+		String line = in.readLine();
+		if (line != null && line.startsWith("tsrg2 ")) {
+			line = in.readLine();
+		}
+		for (; line != null; line = in.readLine()) {
+			if (line.isEmpty() || line.charAt(0) == '\t' || line.charAt(0) == ' ' || line.charAt(0) == '#') {
+				// members or comments
+				continue;
+			}
+			String[] parts = line.split(" ");
+			if (parts.length >= 2) {
+				builder.put(parts[0], parts[1]);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Reads the class mappings of a Tiny v1 or v2 file from one namespace to
+	 * another.
+	 */
+	public static NameMapping readTiny(Reader reader, String fromNamespace, String toNamespace) throws IOException {
+		Builder builder = new Builder(1024);
+		BufferedReader in = new BufferedReader(reader);
+		String header = in.readLine();
+		if (header == null) {
+			return builder.build();
+		}
+		String[] headerParts = header.split("\t");
+		int namespaceStart;
+		String classPrefix;
+		if (headerParts[0].equals("v1")) {
+			namespaceStart = 1;
+			classPrefix = "CLASS\t";
+		} else if (headerParts[0].equals("tiny") && headerParts.length > 1 && headerParts[1].equals("2")) {
+			namespaceStart = 3;
+			classPrefix = "c\t";
+		} else {
+			throw new IOException("Unknown tiny mapping format: " + header);
+		}
+		String[] namespaces = Arrays.copyOfRange(headerParts, namespaceStart, headerParts.length);
+		int from = Arrays.asList(namespaces).indexOf(fromNamespace);
+		int to = Arrays.asList(namespaces).indexOf(toNamespace);
+		if (from == -1 || to == -1) {
+			throw new IOException("Unknown namespace: " + (from == -1 ? fromNamespace : toNamespace));
+		}
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (!line.startsWith(classPrefix)) {
+				continue;
+			}
+			String[] parts = line.split("\t");
+			String fromName = 1 + from < parts.length ? parts[1 + from] : "";
+			String toName = 1 + to < parts.length ? parts[1 + to] : "";
+			if (!fromName.isEmpty() && !toName.isEmpty()) {
+				builder.put(fromName, toName);
+			}
+		}
+		return builder.build();
+	}
+
+	public static final class Builder {
+
+		private String[] keys;
+		private String[] values;
+		private int size;
+
+		public Builder() {
+			this(16);
+		}
+
+		public Builder(int expectedSize) {
+			int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1;
+			this.keys = new String[capacity];
+			this.values = new String[capacity];
+		}
+
+		public Builder put(String name, String mappedName) {
+			Objects.requireNonNull(name);
+			Objects.requireNonNull(mappedName);
+			if (this.size * 2 >= this.keys.length) {
+				this.resize(this.keys.length << 1);
+			}
+			if (insert(this.keys, this.values, name, mappedName)) {
+				this.size++;
+			}
+			return this;
+		}
+
+		private void resize(int capacity) {
+			String[] keys = new String[capacity];
+			String[] values = new String[capacity];
+			for (int i = 0; i < this.keys.length; i++) {
+				if (this.keys[i] != null) {
+					insert(keys, values, this.keys[i], this.values[i]);
+				}
+			}
+			this.keys = keys;
+			this.values = values;
+		}
+
+		/**
+		 * @return {@code true} if a new entry was added
+		 */
+		private static boolean insert(String[] keys, String[] values, String key, String value) {
+			int mask = keys.length - 1;
+			for (int i = hash(key, key.length()) & mask;; i = (i + 1) & mask) {
+				if (keys[i] == null) {
+					keys[i] = key;
+					values[i] = value;
+					return true;
+				}
+				if (keys[i].equals(key)) {
+					values[i] = value;
+					return false;
+				}
+			}
+		}
+
+		public NameMapping build() {
+			return new NameMapping(this.keys.clone(), this.values.clone(), this.size);
+		}
+
+	}
+
+}
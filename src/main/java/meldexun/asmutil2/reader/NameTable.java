@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.reader;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Interns class names as {@link Symbol}s with unique ids. The table only
+ * weakly references the symbols, a name is released once no cached class
+ * references it anymore.
+ */
+final class NameTable {
+
+	private final ConcurrentHashMap<String, SymbolReference> symbols = new ConcurrentHashMap<>();
+	private final ReferenceQueue<Symbol> queue = new ReferenceQueue<>();
+	private final AtomicInteger nextId = new AtomicInteger();
+
+	Symbol symbol(String name) {
+		SymbolReference reference = this.symbols.get(name);
+		Symbol symbol = reference != null ? reference.get() : null;
+		if (symbol != null) {
+			return symbol;
+		}
+		this.expungeStaleEntries();
+		symbol = new Symbol(this.nextId.getAndIncrement(), name);
+		SymbolReference newReference = new SymbolReference(symbol, this.queue);
+		while (true) {
+			reference = this.symbols.putIfAbsent(name, newReference);
+			if (reference == null) {
+				return symbol;
+			}
+			Symbol existing = reference.get();
+			if (existing != null) {
+				return existing;
+			}
+			if (this.symbols.replace(name, reference, newReference)) {
+				return symbol;
+			}
+		}
+	}
+
+	/**
+	 * @return the symbol or {@code null} if the name is not referenced by any
+	 *         cached class
+	 */
+	Symbol find(String name) {
+		SymbolReference reference = this.symbols.get(name);
+		return reference != null ? reference.get() : null;
+	}
+
+	int size() {
+		this.expungeStaleEntries();
+		return this.symbols.size();
+	}
+
+	private void expungeStaleEntries() {
+		SymbolReference reference;
+		while ((reference = (SymbolReference) this.queue.poll()) != null) {
+			this.symbols.remove(reference.name, reference);
+		}
+	}
+
+	static final class Symbol {
+
+		final int id;
+		final String name;
+
+		Symbol(int id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+
+		@Override
+		public String toString() {
+			return this.name;
+		}
+
+	}
+
+	private static final class SymbolReference extends WeakReference<Symbol> {
+
+		final String name;
+
+		SymbolReference(Symbol symbol, ReferenceQueue<Symbol> queue) {
+			super(symbol, queue);
+			this.name = symbol.name;
+		}
+
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import org.junit.jupiter.api.Test;
+
+public class BatchClassTransformerTest {
+
+	@Test
+	public void testResult() {
+		BatchClassTransformer batchTransformer = new BatchClassTransformer((obfName, name, basicClass) -> {
+			switch (name) {
+			case "a/Transformed":
+				return new byte[] { 2 };
+			case "a/Failing":
+				throw new IllegalStateException();
+			case "a/Recursive":
+				throw new StackOverflowError();
+			default:
+				return basicClass;
+			}
+		}, 2);
+		Map<String, byte[]> classes = new HashMap<>();
+		classes.put("a/Untransformed", new byte[] { 1 });
+		classes.put("a/Transformed", new byte[] { 1 });
+		classes.put("a/Failing", new byte[] { 1 });
+		classes.put("a/Recursive", new byte[] { 1 });
+
+		BatchClassTransformer.Result result = batchTransformer.transform(classes);
+
+		assertEquals(1, result.classes().size());
+		assertArrayEquals(new byte[] { 2 }, result.classes().get("a/Transformed"));
+		assertEquals(2, result.failures().size());
+		assertTrue(result.failures().get("a/Failing") instanceof IllegalStateException);
+		assertTrue(result.failures().get("a/Recursive") instanceof StackOverflowError);
+	}
+
+	@Test
+	public void testPoolIsReused() {
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			Set<ForkJoinPool> pools = ConcurrentHashMap.newKeySet();
+			BatchClassTransformer batchTransformer = new BatchClassTransformer((obfName, name, basicClass) -> {
+				pools.add(((ForkJoinWorkerThread) Thread.currentThread()).getPool());
+				return basicClass;
+			}, pool);
+			Map<String, byte[]> classes = new HashMap<>();
+			for (int i = 0; i < 16; i++) {
+				classes.put("a/A" + i, new byte[] { 1 });
+			}
+
+			for (int i = 0; i < 2; i++) {
+				BatchClassTransformer.Result result = batchTransformer.transform(classes);
+				assertFalse(result.hasFailures());
+				assertTrue(result.classes().isEmpty());
+			}
+			assertEquals(1, pools.size());
+			assertTrue(pools.contains(pool));
+			assertFalse(pool.isShutdown());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+public class ClassExporterTest {
+
+	@Test
+	public void testExportedVersions() throws IOException, InterruptedException {
+		Path dir = Files.createTempDirectory("export");
+		try {
+			Path stale = Files.createDirectories(dir.resolve("old")).resolve("Stale.class");
+			Files.write(stale, new byte[] { 0 });
+			ClassExporter exporter = new ClassExporter(dir, false, 16);
+			exporter.export("a.B", new byte[] { 1 });
+			exporter.export("a.B", new byte[] { 1 });
+			exporter.export("a.B", new byte[] { 2 });
+			exporter.export("a.C", new byte[] { 3 });
+			exporter.flush();
+
+			assertFalse(Files.exists(stale));
+			assertArrayEquals(new byte[] { 1 }, Files.readAllBytes(dir.resolve("a/B.class")));
+			assertArrayEquals(new byte[] { 2 }, Files.readAllBytes(dir.resolve("a/B.1.class")));
+			assertFalse(Files.exists(dir.resolve("a/B.2.class")));
+			assertArrayEquals(new byte[] { 3 }, Files.readAllBytes(dir.resolve("a/C.class")));
+		} finally {
+			FileUtil.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testFailedExportKeepsWriterAlive() throws IOException, InterruptedException {
+		Path dir = Files.createTempDirectory("export");
+		try {
+			ClassExporter exporter = new ClassExporter(dir, false, 16);
+			// not a valid path
+			exporter.export("a.\u0000", new byte[] { 1 });
+			exporter.export("a.B", new byte[] { 2 });
+			exporter.flush();
+
+			assertArrayEquals(new byte[] { 2 }, Files.readAllBytes(dir.resolve("a/B.class")));
+		} finally {
+			FileUtil.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testFullQueueDoesNotBlock() throws IOException, InterruptedException {
+		Path dir = Files.createTempDirectory("export");
+		try {
+			ClassExporter exporter = new ClassExporter(dir, false, 1);
+			long start = System.nanoTime();
+			for (int i = 0; i < 10_000; i++) {
+				exporter.export("a.B" + i, new byte[] { 1 });
+			}
+			assertTrue(System.nanoTime() - start < 5_000_000_000L);
+			exporter.flush();
+		} finally {
+			FileUtil.deleteDirectory(dir);
+		}
+	}
+
+}
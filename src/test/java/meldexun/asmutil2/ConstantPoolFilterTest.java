@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+public class ConstantPoolFilterTest {
+
+	@Test
+	public void testModifiedUtf8() {
+		String[] constants = { "caf\u00e9", "a\u0000b", "\ud83d\ude00", "\u4e2d\u6587", "\u07ff\u0800\uffff" };
+		ClassReader classReader = classWith(constants);
+		for (String constant : constants) {
+			assertTrue(ConstantPoolFilter.anyOf(constant).test(classReader), constant);
+		}
+		assertFalse(ConstantPoolFilter.anyOf("cafe").test(classReader));
+		assertFalse(ConstantPoolFilter.anyOf("caf").test(classReader));
+		assertFalse(ConstantPoolFilter.anyOf("a").test(classReader));
+		assertFalse(ConstantPoolFilter.anyOf("\ud83d").test(classReader));
+	}
+
+	@Test
+	public void testRandomStrings() {
+		Random random = new Random(0);
+		for (int i = 0; i < 1000; i++) {
+			char[] chars = new char[1 + random.nextInt(8)];
+			for (int j = 0; j < chars.length; j++) {
+				switch (random.nextInt(4)) {
+				case 0:
+					chars[j] = (char) random.nextInt(0x80);
+					break;
+				case 1:
+					chars[j] = (char) random.nextInt(0x800);
+					break;
+				default:
+					chars[j] = (char) random.nextInt(0x10000);
+					break;
+				}
+			}
+			String constant = new String(chars);
+			chars[chars.length - 1]++;
+			String other = new String(chars);
+			assertTrue(ConstantPoolFilter.anyOf(constant).test(classWith(constant)), constant);
+			assertFalse(ConstantPoolFilter.anyOf(other).test(classWith(constant)), other);
+		}
+	}
+
+	@Test
+	public void testGroups() {
+		ClassReader classReader = classWith("a", "b");
+		assertTrue(ConstantPoolFilter.anyOf("x", "a").test(classReader));
+		assertTrue(ConstantPoolFilter.anyOf("a").and(ConstantPoolFilter.anyOf("x", "b")).test(classReader));
+		assertFalse(ConstantPoolFilter.anyOf("a").and(ConstantPoolFilter.anyOf("x")).test(classReader));
+		assertFalse(ConstantPoolFilter.anyOf().test(classReader));
+	}
+
+	private static ClassReader classWith(String... constants) {
+		ClassWriter classWriter = new ClassWriter(0);
+		classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "Test", null, "java/lang/Object", null);
+		// occupies two constant pool slots
+		classWriter.newConst(Long.valueOf(1L));
+		for (String constant : constants) {
+			classWriter.newUTF8(constant);
+		}
+		classWriter.visitEnd();
+		return new ClassReader(classWriter.toByteArray());
+	}
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.function.BiFunction;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Runs the same searches on an {@link IndexedInsnList} and a plain
+ * {@link org.objectweb.asm.tree.InsnList} while both are modified the same way.
+ */
+public class InsnFinderTest {
+
+	private static final String[] NAMES = { "a", "b", "c", "d" };
+
+	@Test
+	public void testIndexedFindsSameInsns() {
+		Random random = new Random(0);
+		for (int i = 0; i < 200; i++) {
+			MethodNode indexed = new MethodNode();
+			MethodNode plain = new MethodNode();
+			for (int j = 0; j < 40; j++) {
+				AbstractInsnNode insn = randomInsn(random);
+				indexed.instructions.add(insn);
+				plain.instructions.add(copy(insn));
+			}
+			IndexedInsnList.attach(indexed);
+
+			for (int j = 0; j < 50; j++) {
+				int query = random.nextInt(6);
+				String name = NAMES[random.nextInt(NAMES.length)];
+				String obfName = NAMES[random.nextInt(NAMES.length)];
+				int ordinal = random.nextInt(3);
+				int start = random.nextInt(plain.instructions.size());
+				boolean forward = random.nextBoolean();
+				BiFunction<MethodNode, AbstractInsnNode, InsnFinder<?>> finder = (method, startInsn) -> {
+					InsnFinder<AbstractInsnNode> base = forward ? InsnFinder.next(method, startInsn)
+							: InsnFinder.prev(method, startInsn);
+					switch (query) {
+					case 0:
+						return base.methodInsn(name).ordinal(ordinal);
+					case 1:
+						return base.methodInsnObf(name, obfName).ordinal(ordinal);
+					case 2:
+						return base.methodInsnObf("o", name, "()V", "p", obfName, "(I)V").ordinal(ordinal);
+					case 3:
+						return base.fieldInsnObf(name, obfName).ordinal(ordinal);
+					case 4:
+						return base.fieldInsn("o", name, "I").ordinal(ordinal);
+					default:
+						return base.opcode(Opcodes.ICONST_0).ordinal(ordinal);
+					}
+				};
+				String message = "query " + query + " " + name + "/" + obfName + " ordinal " + ordinal + " from "
+						+ start + (forward ? " forward" : " backward");
+				assertEquals(find(plain, finder, start), find(indexed, finder, start), message);
+
+				if (random.nextBoolean()) {
+					int position = random.nextInt(plain.instructions.size());
+					AbstractInsnNode insn = randomInsn(random);
+					if (random.nextBoolean()) {
+						indexed.instructions.insert(indexed.instructions.get(position), insn);
+						plain.instructions.insert(plain.instructions.get(position), copy(insn));
+					} else {
+						indexed.instructions.set(indexed.instructions.get(position), insn);
+						plain.instructions.set(plain.instructions.get(position), copy(insn));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testModifiedInsnAfterInvalidate() {
+		MethodNode method = new MethodNode();
+		IndexedInsnList instructions = IndexedInsnList.attach(method);
+		MethodInsnNode insn = new MethodInsnNode(Opcodes.INVOKESTATIC, "o", "a", "()V", false);
+		instructions.add(insn);
+		assertSame(insn, InsnFinder.first(method).methodInsn("a").find());
+		assertSame(insn, InsnFinder.first(method).methodInsn("a").find());
+
+		insn.name = "b";
+		instructions.invalidate();
+		assertSame(insn, InsnFinder.first(method).methodInsn("b").find());
+		assertSame(insn, InsnFinder.first(method).methodInsn("b").find());
+		assertTrue(instructions.methodInsns("a").isEmpty());
+	}
+
+	private static int find(MethodNode method, BiFunction<MethodNode, AbstractInsnNode, InsnFinder<?>> finder,
+			int start) {
+		try {
+			return method.instructions.indexOf(finder.apply(method, method.instructions.get(start)).find());
+		} catch (NoSuchElementException e) {
+			return -1;
+		}
+	}
+
+	private static AbstractInsnNode copy(AbstractInsnNode insn) {
+		return insn instanceof LabelNode ? new LabelNode() : insn.clone(null);
+	}
+
+	private static AbstractInsnNode randomInsn(Random random) {
+		String name = NAMES[random.nextInt(NAMES.length)];
+		switch (random.nextInt(5)) {
+		case 0:
+			return new MethodInsnNode(Opcodes.INVOKESTATIC, random.nextBoolean() ? "o" : "p", name,
+					random.nextBoolean() ? "()V" : "(I)V", false);
+		case 1:
+			return new MethodInsnNode(Opcodes.INVOKEVIRTUAL, "o", name, "()V", false);
+		case 2:
+			return new FieldInsnNode(Opcodes.GETSTATIC, random.nextBoolean() ? "o" : "p", name, "I");
+		case 3:
+			return new LabelNode();
+		default:
+			return new InsnNode(random.nextBoolean() ? Opcodes.ICONST_0 : Opcodes.ICONST_1);
+		}
+	}
+
+}
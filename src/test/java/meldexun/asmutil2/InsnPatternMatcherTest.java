@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+
+/**
+ * Compares the matches with {@link java.util.regex} on strings where
+ * {@code a}, {@code b} and {@code c} stand for {@code ICONST_0},
+ * {@code ICONST_1} and {@code ICONST_2}.
+ */
+public class InsnPatternMatcherTest {
+
+	private static final int[][] REPETITIONS = { { 1, 1 }, { 0, 1 }, { 0, -1 }, { 1, -1 }, { 1, 2 }, { 2, 3 } };
+
+	@Test
+	public void testMatchesLikeRegex() {
+		Random random = new Random(0);
+		for (int i = 0; i < 500; i++) {
+			int patternCount = 1 + random.nextInt(3);
+			InsnPattern[] patterns = new InsnPattern[patternCount];
+			Pattern[] regexes = new Pattern[patternCount];
+			for (int p = 0; p < patternCount; p++) {
+				InsnPattern.Builder builder = InsnPattern.builder();
+				StringBuilder regex = new StringBuilder();
+				boolean required = false;
+				int elementCount = 1 + random.nextInt(4);
+				for (int e = 0; e < elementCount; e++) {
+					int letter = random.nextInt(4);
+					if (letter == 3) {
+						builder.any();
+						regex.append('.');
+					} else {
+						builder.opcode(Opcodes.ICONST_0 + letter);
+						regex.append((char) ('a' + letter));
+					}
+					int[] repetition = REPETITIONS[random.nextInt(REPETITIONS.length)];
+					if (e == elementCount - 1 && !required) {
+						repetition = REPETITIONS[0];
+					}
+					builder.repeat(repetition[0], repetition[1]);
+					regex.append('{').append(repetition[0]).append(',');
+					if (repetition[1] >= 0) {
+						regex.append(repetition[1]);
+					}
+					regex.append('}');
+					required |= repetition[0] > 0;
+				}
+				patterns[p] = builder.build();
+				regexes[p] = Pattern.compile(regex.toString());
+			}
+
+			StringBuilder input = new StringBuilder();
+			InsnList instructions = new InsnList();
+			Map<AbstractInsnNode, Integer> positions = new IdentityHashMap<>();
+			int length = random.nextInt(30);
+			for (int j = 0; j < length; j++) {
+				if (random.nextInt(4) == 0) {
+					instructions.add(new LabelNode());
+				}
+				int letter = random.nextInt(3);
+				AbstractInsnNode insn = new InsnNode(Opcodes.ICONST_0 + letter);
+				positions.put(insn, j);
+				instructions.add(insn);
+				input.append((char) ('a' + letter));
+			}
+
+			List<InsnPatternMatcher.Match> matches = InsnPatternMatcher.compile(patterns).findAll(instructions);
+			for (int p = 0; p < patternCount; p++) {
+				List<String> expected = new ArrayList<>();
+				Matcher matcher = regexes[p].matcher(input);
+				while (matcher.find()) {
+					expected.add(matcher.start() + ".." + matcher.end());
+				}
+				List<String> actual = new ArrayList<>();
+				for (InsnPatternMatcher.Match match : matches) {
+					if (match.patternIndex() == p) {
+						actual.add(positions.get(match.first()) + ".." + (positions.get(match.last()) + 1));
+					}
+				}
+				assertEquals(expected, actual, regexes[p] + " in " + input);
+				List<String> single = new ArrayList<>();
+				for (InsnPatternMatcher.Match match : InsnPatternMatcher.compile(patterns[p]).findAll(instructions)) {
+					single.add(positions.get(match.first()) + ".." + (positions.get(match.last()) + 1));
+				}
+				assertEquals(expected, single, regexes[p] + " in " + input);
+			}
+		}
+	}
+
+	@Test
+	public void testCaptures() {
+		InsnList instructions = new InsnList();
+		AbstractInsnNode load = new InsnNode(Opcodes.ACONST_NULL);
+		AbstractInsnNode first = new InsnNode(Opcodes.ICONST_0);
+		AbstractInsnNode second = new InsnNode(Opcodes.ICONST_1);
+		MethodInsnNode call = new MethodInsnNode(Opcodes.INVOKESTATIC, "a/B", "m", "(Ljava/lang/Object;II)V", false);
+		instructions.add(load);
+		instructions.add(new LabelNode());
+		instructions.add(first);
+		instructions.add(second);
+		instructions.add(call);
+
+		InsnPattern pattern = InsnPattern.builder()
+				.opcode(Opcodes.ACONST_NULL).capture("instance")
+				.any().oneOrMore().capture("args")
+				.methodInsn(SignatureMatcher.matchingMethodInsnName("m")).capture("call")
+				.build();
+		List<InsnPatternMatcher.Match> matches = InsnPatternMatcher.compile(pattern).findAll(instructions);
+
+		assertEquals(1, matches.size());
+		InsnPatternMatcher.Match match = matches.get(0);
+		assertEquals(4, match.insns().size());
+		assertSame(load, match.get("instance"));
+		assertSame(second, match.get("args"));
+		assertEquals(2, match.getAll("args").size());
+		assertSame(first, match.getAll("args").get(0));
+		assertSame(call, match.get("call"));
+		assertNull(match.get("missing"));
+	}
+
+}
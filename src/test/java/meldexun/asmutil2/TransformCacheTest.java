@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.tree.ClassNode;
+
+import meldexun.asmutil2.reader.ClassUtil;
+
+public class TransformCacheTest {
+
+	@Test
+	public void testGet() throws IOException {
+		Path dir = Files.createTempDirectory("cache");
+		try {
+			TransformCache cache = new TransformCache(dir, 1L << 20);
+			String transformed = cache.key("a/A", new byte[] { 1 }, "fingerprint");
+			String unchanged = cache.key("a/B", new byte[] { 1 }, "fingerprint");
+			cache.put(transformed, new byte[] { 1, 2, 3 });
+			cache.put(unchanged, null);
+
+			assertArrayEquals(new byte[] { 1, 2, 3 }, cache.get(transformed));
+			assertSame(TransformCache.UNCHANGED, cache.get(unchanged));
+			assertNull(cache.get(cache.key("a/A", new byte[] { 2 }, "fingerprint")));
+			assertEquals(2, cache.hits());
+			assertEquals(1, cache.misses());
+			assertEquals(cache.size(), new TransformCache(dir, 1L << 20).size());
+		} finally {
+			FileUtil.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testCorruptedEntryIsDiscarded() throws IOException {
+		Path dir = Files.createTempDirectory("cache");
+		try {
+			TransformCache cache = new TransformCache(dir, 1L << 20);
+			String key = cache.key("a/A", new byte[] { 1 }, "fingerprint");
+			cache.put(key, new byte[] { 1, 2, 3 });
+			Path file = entries(dir).get(0);
+			byte[] entry = Files.readAllBytes(file);
+			entry[entry.length - 1]++;
+			Files.write(file, entry);
+
+			assertNull(cache.get(key));
+			assertEquals(1, cache.corruptions());
+			assertFalse(Files.exists(file));
+			assertEquals(0, cache.size());
+		} finally {
+			FileUtil.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testOnlyStaleTempFilesAreDeleted() throws IOException {
+		Path dir = Files.createTempDirectory("cache");
+		try {
+			Path subDir = Files.createDirectory(dir.resolve("00"));
+			Path staleFile = Files.write(subDir.resolve("stale.bin" + FileUtil.TEMP_SUFFIX), new byte[] { 1 });
+			Files.setLastModifiedTime(staleFile, FileTime.fromMillis(System.currentTimeMillis() - 600_000L));
+			// may be written by another process
+			Path inFlightFile = Files.write(subDir.resolve("in-flight.bin" + FileUtil.TEMP_SUFFIX), new byte[] { 1 });
+
+			new TransformCache(dir, 1L << 20);
+
+			assertFalse(Files.exists(staleFile));
+			assertTrue(Files.exists(inFlightFile));
+		} finally {
+			FileUtil.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testEviction() throws IOException {
+		Path dir = Files.createTempDirectory("cache");
+		try {
+			TransformCache cache = new TransformCache(dir, 4096L);
+			for (int i = 0; i < 16; i++) {
+				cache.put(cache.key("a/A", new byte[] { (byte) i }, "fingerprint"), new byte[1000]);
+			}
+
+			assertTrue(cache.evictions() > 0);
+			assertTrue(cache.size() <= 4096L);
+			long size = 0L;
+			for (Path file : entries(dir)) {
+				size += Files.size(file);
+			}
+			assertEquals(size, cache.size());
+		} finally {
+			FileUtil.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testFingerprintContainsTransformerClasses() {
+		String fingerprint = fingerprint(new FirstTransformer());
+		String lambdaFingerprint = fingerprint(ClassNodeTransformer.create(0, 0, 1, classNode -> true));
+
+		assertNotEquals(fingerprint, fingerprint(new SecondTransformer()));
+		assertTrue(fingerprint.contains(FirstTransformer.class.getName()));
+		assertTrue(lambdaFingerprint.contains(TransformCacheTest.class.getName()));
+		assertFalse(lambdaFingerprint.contains("$$Lambda"));
+	}
+
+	private static String fingerprint(ClassNodeTransformer transformer) {
+		return ClassNodeClassTransformer.fingerprint(Collections.singletonList(transformer), ClassUtil.DEFAULT);
+	}
+
+	private static List<Path> entries(Path dir) throws IOException {
+		try (Stream<Path> files = Files.walk(dir)) {
+			return files.filter(file -> file.getFileName().toString().endsWith(".bin")).collect(Collectors.toList());
+		}
+	}
+
+	private static class FirstTransformer implements ClassNodeTransformer {
+
+		@Override
+		public boolean transform(ClassNode classNode) {
+			return true;
+		}
+
+		@Override
+		public int writeFlags() {
+			return 0;
+		}
+
+		@Override
+		public int priority() {
+			return 0;
+		}
+
+		@Override
+		public int version() {
+			return 1;
+		}
+
+	}
+
+	private static class SecondTransformer extends FirstTransformer {
+
+	}
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+public class TransformMetricsTest {
+
+	@Test
+	public void testReset() {
+		assertTrue(TransformMetrics.ENABLED);
+		ClassNodeTransformer transformer = MethodNodeTransformer.builder("foo").name("TransformMetricsTest.testReset")
+				.build(method -> { });
+		transformer.transform(classNode());
+		assertEquals(1, calls("TransformMetricsTest.testReset"));
+
+		TransformMetrics.reset();
+		assertEquals(0, calls("TransformMetricsTest.testReset"));
+
+		transformer.transform(classNode());
+		assertEquals(1, calls("TransformMetricsTest.testReset"));
+	}
+
+	private static long calls(String transformer) {
+		for (TransformMetrics.Entry entry : TransformMetrics.snapshot().getTransformers()) {
+			if (entry.getName().equals(transformer)) {
+				return entry.getCalls();
+			}
+		}
+		return 0;
+	}
+
+	private static ClassNode classNode() {
+		ClassNode classNode = new ClassNode();
+		classNode.name = "a/B";
+		classNode.methods.add(new MethodNode(Opcodes.ACC_PUBLIC, "foo", "()V", null, null));
+		return classNode;
+	}
+
+}
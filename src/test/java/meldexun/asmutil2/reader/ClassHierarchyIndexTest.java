@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Opcodes;
+
+import meldexun.asmutil2.reader.ClassUtil.Configuration;
+
+public class ClassHierarchyIndexTest {
+
+	@Test
+	public void testIndexedClassesAreNotRead() throws IOException {
+		Path dir = Files.createTempDirectory("hierarchy");
+		try {
+			Path classes = Files.createDirectory(dir.resolve("classes"));
+			Path indexFile = dir.resolve("index");
+			writeClass(classes, "a/A", "a/B");
+			writeClass(classes, "a/B", "java/lang/Object");
+			save(indexFile, null, classes);
+
+			try (CountingSource source = new CountingSource(classes)) {
+				ClassUtil classUtil = ClassUtil.getInstance(new Configuration(source));
+				assertTrue(classUtil.loadHierarchyIndex(indexFile));
+				assertEquals(Arrays.asList("a/B", "java/lang/Object"), classUtil.getAllSuperTypes("a/A"));
+				// neither read nor located, the class files are unchanged
+				assertEquals(0, source.finds.size());
+				assertEquals(0, source.locations.get());
+			}
+		} finally {
+			deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testChangedClassIsReadAgain() throws IOException {
+		Path dir = Files.createTempDirectory("hierarchy");
+		try {
+			Path classes = Files.createDirectory(dir.resolve("classes"));
+			Path indexFile = dir.resolve("index");
+			writeClass(classes, "a/A", "a/B");
+			writeClass(classes, "a/B", "java/lang/Object");
+			save(indexFile, null, classes);
+			writeClass(classes, "a/B", "a/C");
+			writeClass(classes, "a/C", "java/lang/Object");
+
+			try (CountingSource source = new CountingSource(classes)) {
+				ClassUtil classUtil = ClassUtil.getInstance(new Configuration(source));
+				assertTrue(classUtil.loadHierarchyIndex(indexFile));
+				assertEquals(Arrays.asList("a/B", "a/C", "java/lang/Object"), classUtil.getAllSuperTypes("a/A"));
+				assertEquals(0, source.finds("a/A"));
+				assertEquals(1, source.finds("a/B"));
+			}
+		} finally {
+			deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testShadowedClassIsReadAgain() throws IOException {
+		Path dir = Files.createTempDirectory("hierarchy");
+		try {
+			Path first = Files.createDirectory(dir.resolve("first"));
+			Path second = Files.createDirectory(dir.resolve("second"));
+			Path indexFile = dir.resolve("index");
+			writeClass(second, "a/A", "a/B");
+			writeClass(second, "a/B", "java/lang/Object");
+			save(indexFile, null, first, second);
+			writeClass(first, "a/B", "a/C");
+			writeClass(first, "a/C", "java/lang/Object");
+
+			try (CountingSource source = new CountingSource(first, second)) {
+				ClassUtil classUtil = ClassUtil.getInstance(new Configuration(source));
+				assertTrue(classUtil.loadHierarchyIndex(indexFile));
+				assertEquals(Arrays.asList("a/B", "a/C", "java/lang/Object"), classUtil.getAllSuperTypes("a/A"));
+				assertEquals(0, source.finds("a/A"));
+				assertEquals(1, source.finds("a/B"));
+			}
+		} finally {
+			deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testOtherMappingsAreNotLoaded() throws IOException {
+		Path dir = Files.createTempDirectory("hierarchy");
+		try {
+			Path classes = Files.createDirectory(dir.resolve("classes"));
+			Path indexFile = dir.resolve("index");
+			writeClass(classes, "a/A", "java/lang/Object");
+			Map<String, String> mappings = new LinkedHashMap<>();
+			mappings.put("Aa", "a/X");
+			mappings.put("b", "a/Y");
+			save(indexFile, NameMapping.of(mappings), classes);
+
+			// same hash code
+			assertFalse(load(indexFile, NameMapping.of(Collections.singletonMap("BB", "a/X")), classes));
+			Map<String, String> reordered = new LinkedHashMap<>();
+			reordered.put("b", "a/Y");
+			reordered.put("Aa", "a/X");
+			assertTrue(load(indexFile, NameMapping.of(reordered), classes));
+		} finally {
+			deleteDirectory(dir);
+		}
+	}
+
+	private static void save(Path indexFile, NameMapping mapping, Path... roots) throws IOException {
+		try (CountingSource source = new CountingSource(roots)) {
+			ClassUtil classUtil = ClassUtil.getInstance(new Configuration(source, null, mapping));
+			classUtil.getAllSuperTypes("a/A");
+			classUtil.saveHierarchyIndex(indexFile);
+		}
+	}
+
+	private static boolean load(Path indexFile, NameMapping mapping, Path... roots) throws IOException {
+		try (CountingSource source = new CountingSource(roots)) {
+			return ClassUtil.getInstance(new Configuration(source, null, mapping)).loadHierarchyIndex(indexFile);
+		}
+	}
+
+	private static void writeClass(Path root, String name, String superName) throws IOException {
+		Path file = root.resolve(name + ".class");
+		boolean exists = Files.exists(file);
+		FileTime lastModified = exists ? Files.getLastModifiedTime(file) : null;
+		Files.createDirectories(file.getParent());
+		Files.write(file, TestClassFileSource.classFile(Opcodes.ACC_PUBLIC, name, superName));
+		if (exists) {
+			// the file system may not notice the change otherwise
+			Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified.toMillis() + 10_000L));
+		}
+	}
+
+	private static void deleteDirectory(Path dir) throws IOException {
+		try (Stream<Path> files = Files.walk(dir)) {
+			for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	/**
+	 * Counts how often classes of a {@link ClassPathIndex} are read or located.
+	 */
+	private static class CountingSource implements ClassFileSource, Closeable {
+
+		private final ClassPathIndex index;
+		final Map<String, AtomicInteger> finds = new ConcurrentHashMap<>();
+		final AtomicInteger locations = new AtomicInteger();
+
+		CountingSource(Path... roots) throws IOException {
+			this.index = ClassPathIndex.create(Arrays.asList(roots));
+		}
+
+		int finds(String className) {
+			AtomicInteger finds = this.finds.get(className);
+			return finds != null ? finds.get() : 0;
+		}
+
+		@Override
+		public ClassFile find(String className) throws IOException {
+			this.finds.computeIfAbsent(className, k -> new AtomicInteger()).incrementAndGet();
+			return this.index.find(className);
+		}
+
+		@Override
+		public Path location(String className) {
+			this.locations.incrementAndGet();
+			return this.index.location(className);
+		}
+
+		@Override
+		public String fingerprint() {
+			return this.index.fingerprint();
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.index.close();
+		}
+
+	}
+
+}
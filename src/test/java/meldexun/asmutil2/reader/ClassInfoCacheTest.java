@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import meldexun.asmutil2.reader.ClassInfoCache.EvictionPolicy;
+import meldexun.asmutil2.reader.ClassUtil.ClassInfo;
+
+public class ClassInfoCacheTest {
+
+	private final NameTable nameTable = new NameTable();
+
+	@Test
+	public void testConcurrentRequestsLoadOnce() throws Exception {
+		ClassInfoCache cache = new ClassInfoCache(16, EvictionPolicy.HIERARCHY);
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch arrived = new CountDownLatch(8);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<ClassInfo>> results = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				results.add(executor.submit(() -> {
+					arrived.countDown();
+					return cache.computeIfAbsent("a/B", className -> {
+						loads.incrementAndGet();
+						loading.countDown();
+						await(release);
+						return this.classInfo(className, null);
+					});
+				}));
+			}
+			assertTrue(loading.await(10, TimeUnit.SECONDS));
+			assertTrue(arrived.await(10, TimeUnit.SECONDS));
+			// let the other threads reach the cache while the class is loading
+			Thread.sleep(100);
+			release.countDown();
+			ClassInfo classInfo = results.get(0).get(10, TimeUnit.SECONDS);
+			for (Future<ClassInfo> result : results) {
+				assertSame(classInfo, result.get(10, TimeUnit.SECONDS));
+			}
+			assertEquals(1, loads.get());
+			assertEquals(1, cache.misses());
+			assertEquals(1, cache.size());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testFailedLoadIsSharedButNotCached() throws Exception {
+		ClassInfoCache cache = new ClassInfoCache(16, EvictionPolicy.HIERARCHY);
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch arrived = new CountDownLatch(4);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<ClassInfo>> results = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				results.add(executor.submit(() -> {
+					arrived.countDown();
+					return cache.computeIfAbsent("a/B", className -> {
+						loads.incrementAndGet();
+						loading.countDown();
+						await(release);
+						throw new IllegalStateException("failed");
+					});
+				}));
+			}
+			assertTrue(loading.await(10, TimeUnit.SECONDS));
+			assertTrue(arrived.await(10, TimeUnit.SECONDS));
+			Thread.sleep(100);
+			release.countDown();
+			for (Future<ClassInfo> result : results) {
+				Throwable e = assertThrows(Exception.class, () -> result.get(10, TimeUnit.SECONDS)).getCause();
+				assertTrue(e instanceof IllegalStateException, String.valueOf(e));
+			}
+			assertEquals(1, loads.get());
+			assertEquals(0, cache.size());
+
+			ClassInfo classInfo = cache.computeIfAbsent("a/B", className -> this.classInfo(className, null));
+			assertSame(classInfo, cache.computeIfAbsent("a/B", className -> null));
+			assertEquals(1, cache.size());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testNestedLoads() {
+		ClassInfoCache cache = new ClassInfoCache(16, EvictionPolicy.HIERARCHY);
+		// loading a class loads its super class from within the loader
+		ClassInfo classInfo = cache.computeIfAbsent("a/C", className -> {
+			ClassInfo superClass = cache.computeIfAbsent("a/B", superName -> this.classInfo(superName, null));
+			return this.classInfo(className, superClass.name.name);
+		});
+		assertEquals("a/B", classInfo.superClass.name);
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testLruEviction() {
+		ClassInfoCache cache = new ClassInfoCache(8, EvictionPolicy.LRU);
+		for (int i = 0; i < 8; i++) {
+			this.load(cache, "a/C" + i, null);
+		}
+		this.load(cache, "a/C0", null);
+		this.load(cache, "a/C8", null);
+
+		// evicted down to 7/8 of the maximum size
+		assertEquals(7, cache.size());
+		assertEquals(2, cache.evictions());
+		assertTrue(cache.contains("a/C0"));
+		assertFalse(cache.contains("a/C1"));
+		assertFalse(cache.contains("a/C2"));
+		assertTrue(cache.contains("a/C8"));
+	}
+
+	@Test
+	public void testHierarchyEvictionKeepsSuperTypes() {
+		ClassInfoCache hierarchy = new ClassInfoCache(8, EvictionPolicy.HIERARCHY);
+		ClassInfoCache lru = new ClassInfoCache(8, EvictionPolicy.LRU);
+		for (ClassInfoCache cache : new ClassInfoCache[] { hierarchy, lru }) {
+			this.load(cache, "a/Root", null);
+			for (int i = 0; i < 20; i++) {
+				this.load(cache, "a/C" + i, "a/Root");
+			}
+		}
+		assertTrue(hierarchy.contains("a/Root"));
+		assertFalse(lru.contains("a/Root"));
+	}
+
+	@Test
+	public void testSuperTypesAfterReload() {
+		ClassInfoCache cache = new ClassInfoCache(16, EvictionPolicy.HIERARCHY);
+		this.load(cache, "a/Root", null);
+		Random random = new Random(0);
+		for (int i = 0; i < 1000; i++) {
+			// evicted subclasses are loaded again
+			this.load(cache, "a/C" + random.nextInt(64), "a/Root");
+			assertTrue(cache.contains("a/Root"));
+			assertEquals(cache.values().size(), cache.size());
+		}
+
+		// no longer in use once all subclasses are evicted
+		for (int i = 0; i < 64; i++) {
+			this.load(cache, "b/C" + i, null);
+		}
+		assertFalse(cache.contains("a/Root"));
+		assertEquals(cache.values().size(), cache.size());
+	}
+
+	@Test
+	public void testUnbounded() {
+		ClassInfoCache cache = new ClassInfoCache(8, EvictionPolicy.UNBOUNDED);
+		for (int i = 0; i < 20; i++) {
+			this.load(cache, "a/C" + i, null);
+		}
+		assertEquals(20, cache.size());
+		assertEquals(0, cache.evictions());
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertFalse(cache.contains("a/C0"));
+	}
+
+	private ClassInfo load(ClassInfoCache cache, String name, String superName) {
+		return cache.computeIfAbsent(name, className -> this.classInfo(className, superName));
+	}
+
+	private ClassInfo classInfo(String name, String superName) {
+		return new ClassInfo(0, this.nameTable.symbol(name), superName != null ? this.nameTable.symbol(superName) : null,
+				ClassInfo.NO_INTERFACES, null);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			if (!latch.await(10, TimeUnit.SECONDS)) {
+				throw new IllegalStateException("Timed out");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
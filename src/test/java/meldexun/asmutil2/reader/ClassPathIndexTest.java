@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Opcodes;
+
+public class ClassPathIndexTest {
+
+	@Test
+	public void testCorruptJarIsSkipped() throws IOException {
+		Path dir = Files.createTempDirectory("classpath");
+		try {
+			Path jar = Files.write(dir.resolve("corrupt.jar"), new byte[] { 'P', 'K', 3, 4, 0, 0 });
+			Path classes = Files.createDirectory(dir.resolve("classes"));
+			Files.createDirectories(classes.resolve("a"));
+			Files.write(classes.resolve("a/A.class"), TestClassFileSource.classFile(Opcodes.ACC_PUBLIC, "a/A", "java/lang/Object"));
+
+			try (ClassPathIndex index = ClassPathIndex.create(Arrays.asList(jar, classes))) {
+				assertEquals(1, index.size());
+				assertNotNull(index.find("a/A"));
+				assertNull(index.find("a/B"));
+			}
+		} finally {
+			try (Stream<Path> files = Files.walk(dir)) {
+				for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+					Files.delete(file);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.MissingResourceException;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+
+import meldexun.asmutil2.reader.ClassUtil.Configuration;
+
+/**
+ * Run by the {@code prefetchTest} task with prefetching enabled.
+ */
+public class ClassUtilPrefetchTest {
+
+	@Test
+	public void testPrefetchedHierarchy() {
+		assertTrue(ClassInfoPrefetcher.ENABLED);
+		TestClassFileSource source = new TestClassFileSource();
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i <= 30; i++) {
+			source.addClass("a/C" + i, i == 0 ? "java/lang/Object" : "a/C" + (i - 1), "a/I" + i);
+			source.addInterface("a/I" + i);
+		}
+		for (int i = 29; i >= 0; i--) {
+			expected.add("a/C" + i);
+		}
+		for (int i = 30; i >= 0; i--) {
+			expected.add("a/I" + i);
+		}
+		expected.add("java/lang/Object");
+		ClassUtil classUtil = ClassUtil.getInstance(new Configuration(source));
+
+		assertEquals(expected, classUtil.getAllSuperTypes("a/C30"));
+		for (int i = 0; i <= 30; i++) {
+			assertEquals(1, source.reads("a/C" + i));
+			assertEquals(1, source.reads("a/I" + i));
+		}
+	}
+
+	@Test
+	public void testMissingSuperTypeIsNotCached() throws InterruptedException {
+		TestClassFileSource source = new TestClassFileSource();
+		source.addClass("a/Super", "java/lang/Object");
+		source.addClass("a/B", "a/Super", "a/Missing");
+		ClassUtil classUtil = ClassUtil.getInstance(new Configuration(source));
+
+		// loads a/B, the prefetch of a/Missing is never requested
+		assertEquals("a/Super", classUtil.findInClassHierarchy("a/B", "a/Super"::equals));
+		awaitTrue(() -> source.reads("a/Missing") == 1);
+		awaitTrue(() -> !classUtil.getClassInfoCache().contains("a/Missing"));
+
+		assertThrows(MissingResourceException.class, () -> classUtil.getAllSuperTypes("a/B"));
+		assertEquals(2, source.reads("a/Missing"));
+		assertFalse(classUtil.isAssignableFrom("a/Missing", "a/Super"));
+	}
+
+	private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000L;
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+			Thread.sleep(10L);
+		}
+	}
+
+}
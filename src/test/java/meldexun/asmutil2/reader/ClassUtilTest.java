@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.MissingResourceException;
+
+import org.junit.jupiter.api.Test;
+
+import meldexun.asmutil2.reader.ClassUtil.Configuration;
+
+public class ClassUtilTest {
+
+	@Test
+	public void testCachedMissingClass() {
+		TestClassFileSource source = new TestClassFileSource();
+		ClassUtil classUtil = ClassUtil.getInstance(new Configuration(source, null, null, MissingClassPolicy.THROW));
+
+		for (int i = 0; i < 3; i++) {
+			MissingResourceException e = assertThrows(MissingResourceException.class,
+					() -> classUtil.getAllSuperTypes("a/Missing"));
+			assertEquals("a/Missing", e.getClassName());
+			assertEquals(0, e.getStackTrace().length);
+		}
+		assertEquals(1, source.reads("a/Missing"));
+	}
+
+	@Test
+	public void testCommonSuperClass() {
+		TestClassFileSource source = new TestClassFileSource();
+		source.addInterface("a/I");
+		source.addInterface("a/J", "a/I");
+		source.addClass("a/A", "java/lang/Object", "a/J");
+		source.addClass("a/B", "java/lang/Object", "a/I");
+		source.addClass("a/C", "a/A");
+		source.addClass("a/D", "java/lang/Object");
+		ClassUtil classUtil = ClassUtil.getInstance(new Configuration(source, null, null, MissingClassPolicy.THROW));
+
+		assertEquals("a/I", classUtil.getCommonSuperClass("a/A", "a/B"));
+		assertEquals("a/A", classUtil.getCommonSuperClass("a/C", "a/A"));
+		assertEquals("a/I", classUtil.getCommonSuperClass("a/B", "a/C"));
+		assertEquals("java/lang/Object", classUtil.getCommonSuperClass("a/D", "a/A"));
+		assertEquals(4, classUtil.getCommonSuperClassCache().size());
+	}
+
+	@Test
+	public void testAssumedCommonSuperClassIsNotCached() {
+		TestClassFileSource source = new TestClassFileSource();
+		source.addClass("a/A", "a/Missing");
+		source.addClass("a/B", "java/lang/Object");
+		source.addClass("a/C", "a/A");
+		ClassUtil classUtil = ClassUtil.getInstance(
+				new Configuration(source, null, null, MissingClassPolicy.ASSUME_OBJECT));
+
+		// found before the assumed class is visited
+		assertEquals("a/A", classUtil.getCommonSuperClass("a/C", "a/A"));
+		assertEquals(1, classUtil.getCommonSuperClassCache().size());
+		assertEquals("java/lang/Object", classUtil.getCommonSuperClass("a/B", "a/A"));
+		assertEquals("java/lang/Object", classUtil.getCommonSuperClass("a/C", "a/B"));
+		// memoized ancestors
+		assertEquals("java/lang/Object", classUtil.getCommonSuperClass("a/C", "a/B"));
+		assertEquals(1, classUtil.getCommonSuperClassCache().size());
+	}
+
+	@Test
+	public void testSearchDoesNotAllocate() {
+		TestClassFileSource source = new TestClassFileSource();
+		source.addInterface("a/I");
+		source.addClass("a/A", "java/lang/Object", "a/I");
+		source.addClass("a/B", "a/A");
+		ClassUtil classUtil = ClassUtil.getInstance(new Configuration(source, null, null, MissingClassPolicy.THROW));
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		for (int i = 0; i < 10_000; i++) {
+			// accepted before the hierarchy is resolved completely, so not memoized
+			classUtil.isAssignableFrom("a/I", "a/B");
+		}
+		long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < 1_000; i++) {
+			classUtil.isAssignableFrom("a/I", "a/B");
+		}
+		allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBytes;
+		// less than one object per search
+		assertTrue(allocatedBytes < 16_000, allocatedBytes + " bytes allocated");
+	}
+
+}
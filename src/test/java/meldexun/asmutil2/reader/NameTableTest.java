@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import meldexun.asmutil2.reader.NameTable.Symbol;
+
+public class NameTableTest {
+
+	@Test
+	public void testInterning() {
+		NameTable nameTable = new NameTable();
+		Symbol a = nameTable.symbol("a/A");
+		Symbol b = nameTable.symbol("a/B");
+		assertEquals(2, nameTable.size());
+
+		assertSame(a, nameTable.symbol(new String("a/A")));
+		assertSame(a, nameTable.find("a/A"));
+		assertNotSame(a, b);
+		assertTrue(a.id != b.id);
+		assertEquals("a/B", b.name);
+		assertNull(nameTable.find("a/C"));
+	}
+
+}
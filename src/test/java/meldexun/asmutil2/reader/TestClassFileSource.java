@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) Meldexun
+ * SPDX-License-Identifier: MIT
+ */
+
+package meldexun.asmutil2.reader;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Serves generated class files from memory and counts how often each class is
+ * read.
+ */
+class TestClassFileSource implements ClassFileSource {
+
+	private final Map<String, byte[]> classes = new ConcurrentHashMap<>();
+	private final Map<String, AtomicInteger> reads = new ConcurrentHashMap<>();
+
+	TestClassFileSource addClass(String name, String superName, String... interfaces) {
+		this.classes.put(name, classFile(Opcodes.ACC_PUBLIC, name, superName, interfaces));
+		return this;
+	}
+
+	TestClassFileSource addInterface(String name, String... interfaces) {
+		this.classes.put(name, classFile(Opcodes.ACC_PUBLIC | Opcodes.ACC_INTERFACE | Opcodes.ACC_ABSTRACT, name,
+				"java/lang/Object", interfaces));
+		return this;
+	}
+
+	int reads(String name) {
+		AtomicInteger reads = this.reads.get(name);
+		return reads != null ? reads.get() : 0;
+	}
+
+	@Override
+	public ClassFile find(String className) {
+		this.reads.computeIfAbsent(className, k -> new AtomicInteger()).incrementAndGet();
+		byte[] classFile = this.classes.get(className);
+		return classFile != null ? new ClassFile(ByteBuffer.wrap(classFile), null) : null;
+	}
+
+	static byte[] classFile(int access, String name, String superName, String... interfaces) {
+		ClassWriter classWriter = new ClassWriter(0);
+		classWriter.visit(Opcodes.V1_8, access, name, null, superName, interfaces);
+		classWriter.visitEnd();
+		return classWriter.toByteArray();
+	}
+
+}